@@ -1,11 +1,16 @@
 package droidkit.sqlite;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.io.IOUtils;
+
 /**
  * @author Daniel Serdyukov
  */
@@ -13,38 +18,97 @@ public class AndroidSQLiteClient extends SQLiteClient {
 
     private final SQLiteOpenHelper mHelper;
 
+    private final SQLiteDb[] mReaders;
+
+    private final AtomicInteger mNextReader = new AtomicInteger();
+
+    private volatile AndroidSQLiteDb mWriter;
+
     public AndroidSQLiteClient(@NonNull Context context, @Nullable String name, int version) {
+        this(context, name, version, 0);
+    }
+
+    /**
+     * @param readers number of read-only connections, if positive the database is switched to write-ahead
+     *                logging and reads outside of a transaction run on the readers in parallel with the writer.
+     *                Ignored for in-memory databases.
+     */
+    public AndroidSQLiteClient(@NonNull Context context, @Nullable String name, int version, int readers) {
         mHelper = new SQLiteHelper(context, name, version);
-        mHelper.getWritableDatabase(); // ensure database creation
+        final SQLiteDatabase db = mHelper.getWritableDatabase(); // ensure database creation
+        if (name != null && readers > 0) {
+            db.enableWriteAheadLogging();
+            mReaders = new SQLiteDb[readers];
+            for (int i = 0; i < readers; ++i) {
+                mReaders[i] = new AndroidSQLiteDb(SQLiteDatabase.openDatabase(db.getPath(), null,
+                        SQLiteDatabase.OPEN_READONLY));
+            }
+        } else {
+            mReaders = new SQLiteDb[0];
+        }
     }
 
     @Override
     public void close() {
-        mHelper.close();
         super.close();
+        for (final SQLiteDb reader : mReaders) {
+            IOUtils.closeQuietly(reader);
+        }
+        mHelper.close();
     }
 
     @NonNull
     @Override
     protected SQLiteDb getReadableDatabase() {
-        return new AndroidSQLiteDb(mHelper.getReadableDatabase());
+        final SQLiteDb writer = getWritableDatabase();
+        if (mReaders.length == 0 || writer.inTransaction()) {
+            return writer;
+        }
+        return mReaders[(mNextReader.getAndIncrement() & Integer.MAX_VALUE) % mReaders.length];
     }
 
     @NonNull
     @Override
     protected SQLiteDb getWritableDatabase() {
-        return new AndroidSQLiteDb(mHelper.getWritableDatabase());
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        AndroidSQLiteDb writer = mWriter;
+        if (writer == null || !writer.wraps(db)) {
+            writer = new AndroidSQLiteDb(db);
+            mWriter = writer;
+        }
+        return writer;
     }
 
     private class SQLiteHelper extends SQLiteOpenHelper {
 
+        private final int mVersion;
+
+        private boolean mDeferredForeignKeys;
+
         public SQLiteHelper(@NonNull Context context, @Nullable String name, int version) {
             super(context, name, null, version);
+            mVersion = version;
         }
 
         @Override
         public void onConfigure(SQLiteDatabase db) {
             AndroidSQLiteClient.this.onConfigure(new AndroidSQLiteDb(db));
+            final int version = db.getVersion();
+            if (version > 0 && version < mVersion
+                    && DatabaseUtils.longForQuery(db, "PRAGMA foreign_keys;", null) == 1) {
+                // foreign keys can't be switched inside the upgrade transaction, dropping a rebuilt table
+                // must not cascade to its children
+                db.setForeignKeyConstraintsEnabled(false);
+                mDeferredForeignKeys = true;
+            }
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            if (mDeferredForeignKeys) {
+                mDeferredForeignKeys = false;
+                db.setForeignKeyConstraintsEnabled(true);
+            }
         }
 
         @Override
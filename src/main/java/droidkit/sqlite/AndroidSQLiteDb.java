@@ -1,7 +1,10 @@
 package droidkit.sqlite;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -29,6 +32,12 @@ class AndroidSQLiteDb implements SQLiteDb {
         return mDb.rawQuery(sql, bindArgs);
     }
 
+    @NonNull
+    @Override
+    public Cursor query(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        return mDb.rawQueryWithFactory(new TypedCursorFactory(bindArgs), sql, null, null);
+    }
+
     @Override
     public void beginTransactionNonExclusive() {
         mDb.beginTransactionNonExclusive();
@@ -59,4 +68,43 @@ class AndroidSQLiteDb implements SQLiteDb {
         IOUtils.closeQuietly(mDb);
     }
 
+    boolean wraps(@NonNull SQLiteDatabase db) {
+        return mDb == db;
+    }
+
+    private static class TypedCursorFactory implements SQLiteDatabase.CursorFactory {
+
+        private final SQLiteArgs mArgs;
+
+        TypedCursorFactory(@NonNull SQLiteArgs args) {
+            mArgs = args;
+        }
+
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            final int size = mArgs.size();
+            for (int index = 1; index <= size; ++index) {
+                switch (mArgs.typeAt(index)) {
+                    case SQLiteArgs.TYPE_LONG:
+                        query.bindLong(index, mArgs.longAt(index));
+                        break;
+                    case SQLiteArgs.TYPE_DOUBLE:
+                        query.bindDouble(index, mArgs.doubleAt(index));
+                        break;
+                    case SQLiteArgs.TYPE_STRING:
+                        query.bindString(index, mArgs.stringAt(index));
+                        break;
+                    case SQLiteArgs.TYPE_BLOB:
+                        query.bindBlob(index, mArgs.blobAt(index));
+                        break;
+                    default:
+                        query.bindNull(index);
+                        break;
+                }
+            }
+            return new SQLiteCursor(driver, editTable, query);
+        }
+
+    }
+
 }
@@ -64,6 +64,11 @@ class AndroidSQLiteStmt implements SQLiteStmt {
         return mStatement.simpleQueryForString();
     }
 
+    @Override
+    public long queryForLong() {
+        return mStatement.simpleQueryForLong();
+    }
+
     @Override
     public void close() {
         mStatement.close();
@@ -0,0 +1,128 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Immutable query with the sql built once. Values passed as {@link #ARG} to the {@link SQLiteQuery} conditions
+ * are slots filled with the arguments of every execution, in the same order. Thread-safe.
+ *
+ * @author Daniel Serdyukov
+ */
+public final class CompiledQuery<T> {
+
+    public static final Object ARG = new Object() {
+        @Override
+        public String toString() {
+            return "CompiledQuery.ARG";
+        }
+    };
+
+    private final ThreadLocal<SQLiteArgs> mArgs = new ThreadLocal<SQLiteArgs>() {
+        @Override
+        protected SQLiteArgs initialValue() {
+            return new SQLiteArgs(mTemplate.size());
+        }
+    };
+
+    private final Class<T> mType;
+
+    private final String mSql;
+
+    private final Uri mUri;
+
+    private final SQLiteArgs mTemplate;
+
+    private final int[] mSlots;
+
+    CompiledQuery(@NonNull Class<T> type, @NonNull String sql, @NonNull List<Object> bindArgs) {
+        mType = type;
+        mSql = sql;
+        mUri = SQLiteSchema.resolveUri(type);
+        mTemplate = new SQLiteArgs(bindArgs.size());
+        int slots = 0;
+        for (final Object value : bindArgs) {
+            if (value == ARG) {
+                ++slots;
+            }
+        }
+        mSlots = new int[slots];
+        slots = 0;
+        for (int index = 1; index <= bindArgs.size(); ++index) {
+            final Object value = bindArgs.get(index - 1);
+            if (value == ARG) {
+                mSlots[slots++] = index;
+                mTemplate.bindNull(index);
+            } else {
+                SQLiteClient.bindQueryValue(mTemplate, index, value);
+            }
+        }
+    }
+
+    @NonNull
+    public String getSql() {
+        return mSql;
+    }
+
+    public int getArgCount() {
+        return mSlots.length;
+    }
+
+    @NonNull
+    public Cursor cursor(@NonNull Object... args) {
+        final Cursor cursor = SQLite.obtainClient().query(mSql, bind(args));
+        cursor.setNotificationUri(SQLite.obtainResolver(), mUri);
+        return cursor;
+    }
+
+    @NonNull
+    public List<T> list(@NonNull Object... args) {
+        final Cursor cursor = SQLite.obtainClient().query(mSql, bind(args));
+        try {
+            return SQLiteList.unpack(cursor, mType);
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Nullable
+    public T one(@NonNull Object... args) {
+        final Cursor cursor = SQLite.obtainClient().query(mSql, bind(args));
+        try {
+            if (cursor.moveToFirst()) {
+                return SQLiteList.unpackOne(cursor, mType);
+            }
+            return null;
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mSql;
+    }
+
+    /**
+     * Arguments are copied to the statement when the cursor is created, so the holder of the thread is reused.
+     */
+    @NonNull
+    private SQLiteArgs bind(@NonNull Object[] args) {
+        if (args.length != mSlots.length) {
+            throw new IllegalArgumentException("Expected " + mSlots.length + " args, got " + args.length);
+        }
+        final SQLiteArgs bound = mArgs.get();
+        mTemplate.bindTo(bound);
+        for (int i = 0; i < mSlots.length; ++i) {
+            SQLiteClient.bindQueryValue(bound, mSlots[i], args[i]);
+        }
+        return bound;
+    }
+
+}
@@ -0,0 +1,78 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import droidkit.dynamic.DynamicException;
+import droidkit.dynamic.MethodHandle;
+import droidkit.dynamic.MethodLookup;
+
+/**
+ * Fallback for helpers generated without {@link SQLiteOps}, looks up {@code save/update/remove} only once.
+ *
+ * @author Daniel Serdyukov
+ */
+class HelperOps<T> implements SQLiteOps<T> {
+
+    private final Class<T> mType;
+
+    private final Class<?> mHelper;
+
+    private volatile MethodHandle mSave;
+
+    private volatile MethodHandle mUpdate;
+
+    private volatile MethodHandle mRemove;
+
+    HelperOps(@NonNull Class<T> type, @NonNull Class<?> helper) {
+        mType = type;
+        mHelper = helper;
+    }
+
+    @Override
+    public void save(@NonNull SQLiteClient client, @NonNull T object) {
+        try {
+            MethodHandle save = mSave;
+            if (save == null) {
+                save = find("save");
+                mSave = save;
+            }
+            save.invokeStatic(client, object);
+        } catch (DynamicException e) {
+            throw SQLite.notSQLiteObject(mType, e);
+        }
+    }
+
+    @Override
+    public void update(@NonNull SQLiteClient client, @NonNull T object) {
+        try {
+            MethodHandle update = mUpdate;
+            if (update == null) {
+                update = find("update");
+                mUpdate = update;
+            }
+            update.invokeStatic(client, object);
+        } catch (DynamicException e) {
+            throw SQLite.notSQLiteObject(mType, e);
+        }
+    }
+
+    @Override
+    public void remove(@NonNull SQLiteClient client, @NonNull T object) {
+        try {
+            MethodHandle remove = mRemove;
+            if (remove == null) {
+                remove = find("remove");
+                mRemove = remove;
+            }
+            remove.invokeStatic(client, object);
+        } catch (DynamicException e) {
+            throw SQLite.notSQLiteObject(mType, e);
+        }
+    }
+
+    @NonNull
+    private MethodHandle find(@NonNull String name) throws DynamicException {
+        return MethodLookup.local().find(mHelper, name, SQLiteClient.class, mType);
+    }
+
+}
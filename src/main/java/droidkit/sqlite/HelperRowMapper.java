@@ -0,0 +1,48 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import droidkit.dynamic.DynamicException;
+import droidkit.dynamic.MethodHandle;
+import droidkit.dynamic.MethodLookup;
+
+/**
+ * Fallback for helpers generated without {@link RowMapper}, looks up {@code instantiate(Cursor)} only once.
+ *
+ * @author Daniel Serdyukov
+ */
+class HelperRowMapper<T> implements RowMapper<T> {
+
+    private static final int[] NO_COLUMNS = new int[0];
+
+    private final String mHelperName;
+
+    private volatile MethodHandle mInstantiate;
+
+    HelperRowMapper(@NonNull String helperName) {
+        mHelperName = helperName;
+    }
+
+    @NonNull
+    @Override
+    public int[] resolveColumns(@NonNull Cursor cursor) {
+        return NO_COLUMNS;
+    }
+
+    @NonNull
+    @Override
+    public T map(@NonNull Cursor cursor, @NonNull int[] columns) {
+        try {
+            MethodHandle instantiate = mInstantiate;
+            if (instantiate == null) {
+                instantiate = MethodLookup.local().find(mHelperName, "instantiate", Cursor.class);
+                mInstantiate = instantiate;
+            }
+            return instantiate.invokeStatic(cursor);
+        } catch (DynamicException e) {
+            throw new SQLiteException("Can't instantiate object", e);
+        }
+    }
+
+}
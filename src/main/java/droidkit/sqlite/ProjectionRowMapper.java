@@ -0,0 +1,163 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import droidkit.dynamic.ProxyFunc2;
+import droidkit.dynamic.ProxyInstance;
+
+/**
+ * Maps projected rows into instances of a getter-only interface. Each getter reads the column named as
+ * the method, the property ({@code getFooBar()} - {@code fooBar}) or its snake case form ({@code foo_bar}),
+ * {@code getId()} falls back to {@code _id}.
+ * Values are copied out of the cursor, so instances stay valid after the cursor is closed.
+ *
+ * @author Daniel Serdyukov
+ */
+class ProjectionRowMapper<T> implements RowMapper<T> {
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<>();
+
+    static {
+        PRIMITIVE_DEFAULTS.put(long.class, 0L);
+        PRIMITIVE_DEFAULTS.put(int.class, 0);
+        PRIMITIVE_DEFAULTS.put(short.class, (short) 0);
+        PRIMITIVE_DEFAULTS.put(byte.class, (byte) 0);
+        PRIMITIVE_DEFAULTS.put(char.class, (char) 0);
+        PRIMITIVE_DEFAULTS.put(boolean.class, false);
+        PRIMITIVE_DEFAULTS.put(double.class, 0d);
+        PRIMITIVE_DEFAULTS.put(float.class, 0f);
+    }
+
+    private final Class<T> mType;
+
+    private final Method[] mGetters;
+
+    private final Map<Method, Integer> mSlots = new HashMap<>();
+
+    ProjectionRowMapper(@NonNull Class<T> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException(type.getName() + " is not an interface");
+        }
+        mType = type;
+        mGetters = type.getMethods();
+        for (int i = 0; i < mGetters.length; ++i) {
+            if (mGetters[i].getParameterTypes().length > 0 || mGetters[i].getReturnType() == void.class) {
+                throw new IllegalArgumentException(mGetters[i] + " is not a getter");
+            }
+            mSlots.put(mGetters[i], i);
+        }
+    }
+
+    @NonNull
+    static String propertyOf(@NonNull String getter) {
+        String property = getter;
+        if (getter.length() > 3 && getter.startsWith("get") && Character.isUpperCase(getter.charAt(3))) {
+            property = getter.substring(3);
+        } else if (getter.length() > 2 && getter.startsWith("is") && Character.isUpperCase(getter.charAt(2))) {
+            property = getter.substring(2);
+        }
+        return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+    }
+
+    @NonNull
+    static String snakeCaseOf(@NonNull String property) {
+        final StringBuilder column = new StringBuilder(property.length() + 4);
+        for (int i = 0; i < property.length(); ++i) {
+            final char c = property.charAt(i);
+            if (Character.isUpperCase(c)) {
+                column.append('_').append(Character.toLowerCase(c));
+            } else {
+                column.append(c);
+            }
+        }
+        return column.toString();
+    }
+
+    @NonNull
+    @Override
+    public int[] resolveColumns(@NonNull Cursor cursor) {
+        final int[] columns = new int[mGetters.length];
+        for (int i = 0; i < mGetters.length; ++i) {
+            final String name = mGetters[i].getName();
+            final String property = propertyOf(name);
+            int index = cursor.getColumnIndex(name);
+            if (index < 0) {
+                index = cursor.getColumnIndex(property);
+            }
+            if (index < 0) {
+                index = cursor.getColumnIndex(snakeCaseOf(property));
+            }
+            if (index < 0 && "id".equals(property)) {
+                index = cursor.getColumnIndex(BaseColumns._ID);
+            }
+            if (index < 0) {
+                throw new SQLiteException("No column for %s.%s in %s", mType.getSimpleName(), name,
+                        Arrays.toString(cursor.getColumnNames()));
+            }
+            columns[i] = index;
+        }
+        return columns;
+    }
+
+    @NonNull
+    @Override
+    public T map(@NonNull Cursor cursor, @NonNull int[] columns) {
+        final Object[] values = new Object[mGetters.length];
+        for (int i = 0; i < mGetters.length; ++i) {
+            values[i] = readValue(cursor, columns[i], mGetters[i].getReturnType());
+        }
+        final Object[] self = new Object[1];
+        self[0] = ProxyInstance.create(mType, new ProxyFunc2() {
+            @Override
+            public Object invoke(@NonNull Method method, Object[] args) throws Exception {
+                final Integer slot = mSlots.get(method);
+                if (slot != null) {
+                    return values[slot];
+                }
+                switch (method.getName()) {
+                    case "hashCode":
+                        return Arrays.hashCode(values);
+                    case "equals":
+                        return self[0] == args[0];
+                    default:
+                        return mType.getSimpleName() + Arrays.toString(values);
+                }
+            }
+        });
+        return mType.cast(self[0]);
+    }
+
+    private static Object readValue(@NonNull Cursor cursor, int index, @NonNull Class<?> type) {
+        if (cursor.isNull(index)) {
+            return type.isPrimitive() ? PRIMITIVE_DEFAULTS.get(type) : null;
+        }
+        if (type == long.class || type == Long.class) {
+            return cursor.getLong(index);
+        } else if (type == int.class || type == Integer.class) {
+            return cursor.getInt(index);
+        } else if (type == short.class || type == Short.class) {
+            return cursor.getShort(index);
+        } else if (type == byte.class || type == Byte.class) {
+            return (byte) cursor.getInt(index);
+        } else if (type == char.class || type == Character.class) {
+            return (char) cursor.getInt(index);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return cursor.getInt(index) != 0;
+        } else if (type == double.class || type == Double.class) {
+            return cursor.getDouble(index);
+        } else if (type == float.class || type == Float.class) {
+            return cursor.getFloat(index);
+        } else if (type == byte[].class) {
+            return cursor.getBlob(index);
+        }
+        return cursor.getString(index);
+    }
+
+}
@@ -0,0 +1,20 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+/**
+ * @author Daniel Serdyukov
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Called once per cursor, result is passed to every {@link #map(Cursor, int[])} call for that cursor.
+     */
+    @NonNull
+    int[] resolveColumns(@NonNull Cursor cursor);
+
+    @NonNull
+    T map(@NonNull Cursor cursor, @NonNull int[] columns);
+
+}
@@ -4,15 +4,15 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-import droidkit.dynamic.DynamicException;
-import droidkit.dynamic.MethodLookup;
 import droidkit.io.IOUtils;
 import rx.Observable;
 import rx.Subscriber;
@@ -65,34 +65,31 @@ public final class SQLite {
     }
 
     @NonNull
-    public static <T> List<T> rawQuery(@NonNull final Class<T> type, @NonNull final String sql,
-                                       final Object... bindArgs) {
-        final SQLiteRawQuery query = new SQLiteRawQuery() {
-            @NonNull
-            @Override
-            public Cursor cursor() {
-                final Cursor cursor = obtainClient().query(sql, bindArgs);
-                cursor.setNotificationUri(obtainResolver(), SQLiteSchema.resolveUri(type));
-                return cursor;
-            }
-        };
-        return new SQLiteLazyList<>(query, query.cursor(), type);
+    public static <T> List<T> rawQuery(@NonNull Class<T> type, @NonNull String sql, Object... bindArgs) {
+        final Cursor cursor = obtainClient().query(sql, bindArgs);
+        cursor.setNotificationUri(obtainResolver(), SQLiteSchema.resolveUri(type));
+        return new SQLiteLazyList<>(cursor, type);
     }
 
+    /**
+     * Raw access to the client, the tables it changes are not known, so all {@link SQLiteQuery#cached()}
+     * results are dropped afterwards.
+     */
     public static <T> T execute(@NonNull Func1<SQLiteClient, T> func) {
-        return func.call(obtainClient());
+        try {
+            return func.call(obtainClient());
+        } finally {
+            SQLiteQueryCache.invalidateAll();
+        }
     }
 
     @NonNull
+    @SuppressWarnings("unchecked")
     public static <T> T save(@NonNull T object) {
-        final Class<?> type = object.getClass();
-        try {
-            MethodLookup.global()
-                    .find(SQLiteSchema.helperOf(type), "save", SQLiteClient.class, type)
-                    .invokeStatic(obtainClient(), object);
-        } catch (DynamicException e) {
-            throw notSQLiteObject(type, e);
-        }
+        final Class<T> type = (Class<T>) object.getClass();
+        SQLiteSchema.opsOf(type).save(obtainClient(), object);
+        SQLiteSchema.evictSaved(type, object);
+        SQLiteQueryCache.invalidate(type);
         return object;
     }
 
@@ -100,45 +97,86 @@ public final class SQLite {
         transaction(new Action0() {
             @Override
             public void call() {
-                final Iterator<?> iterator = objects.iterator();
-                if (iterator.hasNext()) {
-                    final Object object = iterator.next();
-                    final Class<?> type = object.getClass();
-                    SQLiteSchema.mute(type);
-                    save(object);
-                    while (iterator.hasNext()) {
-                        save(iterator.next());
+                final SQLiteClient client = obtainClient();
+                final List<Object> chunk = new ArrayList<>();
+                Class<?> chunkType = null;
+                for (final Object object : objects) {
+                    if (chunkType != object.getClass()) {
+                        if (chunkType != null) {
+                            saveAll(client, chunkType, chunk);
+                            chunk.clear();
+                        }
+                        chunkType = object.getClass();
                     }
-                    SQLiteSchema.unmute(type);
-                    SQLiteSchema.notifyChange(type);
+                    chunk.add(object);
+                }
+                if (chunkType != null) {
+                    saveAll(client, chunkType, chunk);
                 }
             }
         });
     }
 
     @NonNull
+    @SuppressWarnings("unchecked")
     public static <T> T update(@NonNull T object) {
-        final Class<?> type = object.getClass();
-        try {
-            MethodLookup.global()
-                    .find(SQLiteSchema.helperOf(type), "update", SQLiteClient.class, type)
-                    .invokeStatic(obtainClient(), object);
-        } catch (DynamicException e) {
-            throw notSQLiteObject(type, e);
-        }
+        final Class<T> type = (Class<T>) object.getClass();
+        SQLiteSchema.opsOf(type).update(obtainClient(), object);
+        SQLiteSchema.evict(type, object);
+        SQLiteQueryCache.invalidate(type);
         return object;
     }
 
+    /**
+     * Inserts the object or updates the row with the same value of {@code conflictColumn}, the object
+     * receives id of the affected row. Requires {@link SQLiteRowWriter} of the type, see
+     * {@link #registerRowWriter(Class, SQLiteRowWriter)}.
+     */
     @NonNull
+    public static <T> T upsert(@NonNull T object, @NonNull String conflictColumn) {
+        upsertAll(Collections.singletonList(object), conflictColumn);
+        return object;
+    }
+
+    public static void upsertAll(@NonNull final Iterable<?> objects, @NonNull final String conflictColumn) {
+        transaction(new Action0() {
+            @Override
+            public void call() {
+                final SQLiteClient client = obtainClient();
+                final List<Object> chunk = new ArrayList<>();
+                Class<?> chunkType = null;
+                for (final Object object : objects) {
+                    if (chunkType != object.getClass()) {
+                        if (chunkType != null) {
+                            upsertAll(client, chunkType, chunk, conflictColumn);
+                            chunk.clear();
+                        }
+                        chunkType = object.getClass();
+                    }
+                    chunk.add(object);
+                }
+                if (chunkType != null) {
+                    upsertAll(client, chunkType, chunk, conflictColumn);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers writer of the flat type, it enables {@link #upsert(Object, String)} and multi-row inserts
+     * of {@link #saveAll(Iterable)}. Writer registered earlier for the type is replaced.
+     */
+    public static <T> void registerRowWriter(@NonNull Class<T> type, @NonNull SQLiteRowWriter<T> writer) {
+        SQLiteSchema.registerRowWriter(type, writer);
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
     public static <T> T remove(@NonNull T object) {
-        final Class<?> type = object.getClass();
-        try {
-            MethodLookup.global()
-                    .find(SQLiteSchema.helperOf(type), "remove", SQLiteClient.class, type)
-                    .invokeStatic(obtainClient(), object);
-        } catch (DynamicException e) {
-            throw notSQLiteObject(type, e);
-        }
+        final Class<T> type = (Class<T>) object.getClass();
+        SQLiteSchema.opsOf(type).remove(obtainClient(), object);
+        SQLiteSchema.evict(type, object);
+        SQLiteQueryCache.invalidate(type);
         return object;
     }
 
@@ -162,14 +200,73 @@ public final class SQLite {
                     @Override
                     public void call(String table) {
                         obtainClient().executeUpdateDelete("DELETE FROM " + table + ";");
+                        SQLiteSchema.evictTable(table);
+                        final SQLiteQueryCache cache = SQLiteQueryCache.current();
+                        if (cache != null) {
+                            cache.invalidate(table);
+                        }
                     }
                 });
     }
 
+    /**
+     * Asynchronous writes, committed in groups on a single writer thread.
+     */
+    @NonNull
+    public static SQLiteWriteQueue async() {
+        return WriteQueueHolder.INSTANCE;
+    }
+
+    /**
+     * Must be called after writes that bypass {@link SQLite} and {@link SQLiteQuery}, also drops instances
+     * cached by the identity map of the type.
+     */
     public static void notifyChange(@NonNull Class<?> type) {
+        SQLiteSchema.evictAll(type);
         SQLiteSchema.notifyChange(type);
     }
 
+    /**
+     * Reads of the type return the same instance for the same {@code _id} while it is cached. Instances are
+     * evicted by {@link #save(Object)}, {@link #update(Object)}, {@link #remove(Object)}, bulk writes and
+     * {@link #notifyChange(Class)}.
+     *
+     * @param maxSize max number of cached instances
+     */
+    public static void enableIdentityMap(@NonNull Class<?> type, int maxSize) {
+        SQLiteSchema.enableIdentityMap(type, maxSize);
+    }
+
+    public static void disableIdentityMap(@NonNull Class<?> type) {
+        SQLiteSchema.disableIdentityMap(type);
+    }
+
+    /**
+     * Enables caching of {@link SQLiteQuery#cached()} results, replacing the current cache.
+     *
+     * @param maxRows memory budget, in rows of all cached results
+     */
+    @NonNull
+    public static SQLiteQueryCache enableQueryCache(int maxRows) {
+        return SQLiteQueryCache.enable(maxRows);
+    }
+
+    public static void disableQueryCache() {
+        SQLiteQueryCache.disable();
+    }
+
+    @Nullable
+    public static SQLiteQueryCache getQueryCache() {
+        return SQLiteQueryCache.current();
+    }
+
+    /**
+     * Delays change notifications fired outside of a transaction and merges repeated ones, 0 disables it.
+     */
+    public static void setNotifyChangeDelay(long delay, @NonNull TimeUnit unit) {
+        SQLiteNotifier.setDebounce(unit.toMillis(delay));
+    }
+
     static void attach(@NonNull SQLiteClient client, @NonNull Context context) {
         synchronized (SQLite.class) {
             sClientRef = new WeakReference<>(client);
@@ -211,12 +308,60 @@ public final class SQLite {
                 " annotated with @SQLiteObject", e);
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T> void saveAll(@NonNull SQLiteClient client, @NonNull Class<T> type,
+                                    @NonNull List<?> objects) {
+        SQLiteSchema.mute(type);
+        try {
+            final SQLiteRowWriter<T> writer = SQLiteSchema.rowWriterOf(type);
+            if (writer == null) {
+                final SQLiteOps<T> ops = SQLiteSchema.opsOf(type);
+                for (final Object object : objects) {
+                    ops.save(client, (T) object);
+                }
+            } else {
+                SQLiteBulkInsert.insertAll(client, SQLiteSchema.resolveTable(type), writer, (List<T>) objects);
+            }
+        } finally {
+            SQLiteSchema.unmute(type);
+        }
+        SQLiteSchema.evictAll(type, objects);
+        SQLiteSchema.notifyChange(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void upsertAll(@NonNull SQLiteClient client, @NonNull Class<T> type,
+                                      @NonNull List<?> objects, @NonNull String conflictColumn) {
+        SQLiteSchema.mute(type);
+        try {
+            final SQLiteRowWriter<T> writer = SQLiteSchema.rowWriterOf(type);
+            if (writer == null) {
+                throw new IllegalStateException(type.getName() + " has no row writer, register one with" +
+                        " SQLite.registerRowWriter() to upsert by " + conflictColumn);
+            }
+            final SQLiteUpsert<T> upsert = new SQLiteUpsert<>(client, SQLiteSchema.resolveTable(type),
+                    writer, conflictColumn);
+            for (final Object object : objects) {
+                upsert.upsert((T) object);
+            }
+        } finally {
+            SQLiteSchema.unmute(type);
+        }
+        SQLiteSchema.evictAll(type, objects);
+        SQLiteSchema.notifyChange(type);
+    }
+
     @NonNull
     private static RuntimeException notAttachedYet() {
         throw new SQLiteException("SQLite not attached yet, check that SQLiteProvider" +
                 " registered in AndroidManifest.xml");
     }
 
+    @SuppressWarnings("squid:S1118")
+    private static final class WriteQueueHolder {
+        public static final SQLiteWriteQueue INSTANCE = new SQLiteWriteQueue();
+    }
+
     private static class CollectTables implements Observable.OnSubscribe<String> {
 
         @Override
@@ -0,0 +1,213 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import droidkit.io.IOUtils;
+import droidkit.util.Lists;
+
+/**
+ * Several aggregate functions computed in one pass over the query rows. Results are kept in primitive
+ * arrays, INTEGER values are never widened to double.
+ *
+ * @author Daniel Serdyukov
+ */
+public class SQLiteAggregate {
+
+    private final String mTable;
+
+    private final String mWhere;
+
+    private final Object[] mBindArgs;
+
+    private final List<String> mTerms = new ArrayList<>();
+
+    SQLiteAggregate(@NonNull String table, @Nullable String where, @NonNull List<Object> bindArgs) {
+        mTable = table;
+        mWhere = where;
+        mBindArgs = Lists.toArray(bindArgs, Object.class);
+    }
+
+    @NonNull
+    public SQLiteAggregate count() {
+        return add("COUNT(*)");
+    }
+
+    @NonNull
+    public SQLiteAggregate count(@NonNull String column) {
+        return add("COUNT(" + column + ")");
+    }
+
+    @NonNull
+    public SQLiteAggregate sum(@NonNull String column) {
+        return add("SUM(" + column + ")");
+    }
+
+    @NonNull
+    public SQLiteAggregate min(@NonNull String column) {
+        return add("MIN(" + column + ")");
+    }
+
+    @NonNull
+    public SQLiteAggregate max(@NonNull String column) {
+        return add("MAX(" + column + ")");
+    }
+
+    @NonNull
+    public SQLiteAggregate avg(@NonNull String column) {
+        return add("AVG(" + column + ")");
+    }
+
+    /**
+     * @return values of the aggregates in the order they were added
+     */
+    @NonNull
+    public Row execute() {
+        final Cursor cursor = SQLite.obtainClient().query(buildSql(null), mBindArgs);
+        try {
+            if (cursor.moveToFirst()) {
+                return new Row(cursor, 0, mTerms.size());
+            }
+            return new Row(mTerms.size());
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    /**
+     * Single aggregate on a reader connection.
+     */
+    public long executeForLong() {
+        if (mTerms.size() != 1) {
+            throw new IllegalStateException("Expected exactly one aggregate, got " + mTerms.size());
+        }
+        return SQLite.obtainClient().readForLong(buildSql(null), mBindArgs);
+    }
+
+    /**
+     * @param column INTEGER column to group by, rows with NULL key are grouped under the {@code null} key
+     * @return rows in the order of the query
+     * @throws SQLiteException if a key is TEXT, REAL or BLOB, distinct keys would collide as longs
+     */
+    @NonNull
+    public Map<Long, Row> executeGroupedBy(@NonNull String column) {
+        final Cursor cursor = SQLite.obtainClient().query(buildSql(column), mBindArgs);
+        try {
+            final Map<Long, Row> groups = new LinkedHashMap<>(cursor.getCount());
+            if (cursor.moveToFirst()) {
+                do {
+                    final Long key;
+                    switch (cursor.getType(0)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            key = null;
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            key = cursor.getLong(0);
+                            break;
+                        default:
+                            throw new SQLiteException("Group key %s is not INTEGER", column);
+                    }
+                    groups.put(key, new Row(cursor, 1, mTerms.size()));
+                } while (cursor.moveToNext());
+            }
+            return groups;
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @NonNull
+    String buildSql(@Nullable String groupBy) {
+        if (mTerms.isEmpty()) {
+            throw new IllegalStateException("No aggregate functions");
+        }
+        final StringBuilder sql = new StringBuilder("SELECT ");
+        if (groupBy != null) {
+            sql.append(groupBy).append(SQLiteOp.COMMA);
+        }
+        sql.append(TextUtils.join(SQLiteOp.COMMA, mTerms)).append(" FROM ").append(mTable);
+        if (!TextUtils.isEmpty(mWhere)) {
+            sql.append(SQLiteOp.WHERE).append(mWhere);
+        }
+        if (groupBy != null) {
+            sql.append(" GROUP BY ").append(groupBy);
+        }
+        return sql.toString();
+    }
+
+    @NonNull
+    private SQLiteAggregate add(@NonNull String term) {
+        mTerms.add(term);
+        return this;
+    }
+
+    public static final class Row {
+
+        private final int[] mTypes;
+
+        private final long[] mLongs;
+
+        private final double[] mDoubles;
+
+        /**
+         * Result without rows, all values are NULL and doubles are NaN.
+         */
+        Row(int size) {
+            mTypes = new int[size];
+            mLongs = new long[size];
+            mDoubles = new double[size];
+            Arrays.fill(mDoubles, Double.NaN);
+        }
+
+        Row(@NonNull Cursor cursor, int offset, int size) {
+            mTypes = new int[size];
+            mLongs = new long[size];
+            mDoubles = new double[size];
+            for (int i = 0; i < size; ++i) {
+                final int column = offset + i;
+                mTypes[i] = cursor.getType(column);
+                if (mTypes[i] == Cursor.FIELD_TYPE_INTEGER) {
+                    mLongs[i] = cursor.getLong(column);
+                    mDoubles[i] = mLongs[i];
+                } else if (mTypes[i] != Cursor.FIELD_TYPE_NULL) {
+                    mDoubles[i] = cursor.getDouble(column);
+                    mLongs[i] = (long) mDoubles[i];
+                }
+            }
+        }
+
+        public int size() {
+            return mTypes.length;
+        }
+
+        public boolean isNull(int index) {
+            return mTypes[index] == Cursor.FIELD_TYPE_NULL;
+        }
+
+        public long getLong(int index) {
+            return mLongs[index];
+        }
+
+        public double getDouble(int index) {
+            return mDoubles[index];
+        }
+
+        @NonNull
+        public Number getNumber(int index) {
+            if (mTypes[index] == Cursor.FIELD_TYPE_INTEGER || mTypes[index] == Cursor.FIELD_TYPE_NULL) {
+                return mLongs[index];
+            }
+            return mDoubles[index];
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Reusable holder of typed bind arguments. Not thread-safe, intended to be kept per thread (or per loop)
+ * and refilled with {@link #clearBindings()} between executions.
+ *
+ * @author Daniel Serdyukov
+ */
+public final class SQLiteArgs implements SQLiteBindable {
+
+    static final int TYPE_NULL = 0;
+
+    static final int TYPE_LONG = 1;
+
+    static final int TYPE_DOUBLE = 2;
+
+    static final int TYPE_STRING = 3;
+
+    static final int TYPE_BLOB = 4;
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] mTypes;
+
+    private long[] mNumbers;
+
+    private Object[] mObjects;
+
+    private int mSize;
+
+    public SQLiteArgs() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SQLiteArgs(int capacity) {
+        mTypes = new int[capacity];
+        mNumbers = new long[capacity];
+        mObjects = new Object[capacity];
+    }
+
+    @NonNull
+    public static SQLiteArgs of(@Nullable Object... values) {
+        if (values == null) {
+            return new SQLiteArgs(0);
+        }
+        final SQLiteArgs args = new SQLiteArgs(values.length);
+        for (int index = 0; index < values.length; ++index) {
+            SQLiteClient.bindValue(args, index + 1, values[index]);
+        }
+        return args;
+    }
+
+    /**
+     * Same as {@link #of(Object...)}, but values of types without a binder are bound as their
+     * {@link Object#toString()}.
+     */
+    @NonNull
+    static SQLiteArgs ofQuery(@Nullable Object... values) {
+        if (values == null) {
+            return new SQLiteArgs(0);
+        }
+        final SQLiteArgs args = new SQLiteArgs(values.length);
+        for (int index = 0; index < values.length; ++index) {
+            SQLiteClient.bindQueryValue(args, index + 1, values[index]);
+        }
+        return args;
+    }
+
+    @Override
+    public void clearBindings() {
+        Arrays.fill(mObjects, 0, mSize, null);
+        mSize = 0;
+    }
+
+    @Override
+    public void bindNull(int index) {
+        put(index, TYPE_NULL, 0, null);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        put(index, TYPE_LONG, value, null);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        put(index, TYPE_DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        if (value == null) {
+            bindNull(index);
+        } else {
+            put(index, TYPE_STRING, 0, value);
+        }
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        if (value == null) {
+            bindNull(index);
+        } else {
+            put(index, TYPE_BLOB, 0, value);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void bindTo(@NonNull SQLiteBindable target) {
+        target.clearBindings();
+        for (int index = 1; index <= mSize; ++index) {
+            bindAt(target, index, index);
+        }
+    }
+
+    void bindAt(@NonNull SQLiteBindable target, int index, int targetIndex) {
+        switch (typeAt(index)) {
+            case TYPE_LONG:
+                target.bindLong(targetIndex, longAt(index));
+                break;
+            case TYPE_DOUBLE:
+                target.bindDouble(targetIndex, doubleAt(index));
+                break;
+            case TYPE_STRING:
+                target.bindString(targetIndex, stringAt(index));
+                break;
+            case TYPE_BLOB:
+                target.bindBlob(targetIndex, blobAt(index));
+                break;
+            default:
+                target.bindNull(targetIndex);
+                break;
+        }
+    }
+
+    int typeAt(int index) {
+        return mTypes[index - 1];
+    }
+
+    long longAt(int index) {
+        return mNumbers[index - 1];
+    }
+
+    double doubleAt(int index) {
+        return Double.longBitsToDouble(mNumbers[index - 1]);
+    }
+
+    String stringAt(int index) {
+        return (String) mObjects[index - 1];
+    }
+
+    byte[] blobAt(int index) {
+        return (byte[]) mObjects[index - 1];
+    }
+
+    private void put(int index, int type, long number, Object object) {
+        if (index < 1) {
+            throw new IllegalArgumentException("Bind index must be >= 1, got " + index);
+        }
+        ensureCapacity(index);
+        final int slot = index - 1;
+        // skipped slots are bound as NULL
+        for (int gap = mSize; gap < slot; ++gap) {
+            mTypes[gap] = TYPE_NULL;
+            mObjects[gap] = null;
+        }
+        mTypes[slot] = type;
+        mNumbers[slot] = number;
+        mObjects[slot] = object;
+        mSize = Math.max(mSize, index);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mTypes.length) {
+            final int newCapacity = Math.max(capacity, mTypes.length * 2);
+            mTypes = Arrays.copyOf(mTypes, newCapacity);
+            mNumbers = Arrays.copyOf(mNumbers, newCapacity);
+            mObjects = Arrays.copyOf(mObjects, newCapacity);
+        }
+    }
+
+}
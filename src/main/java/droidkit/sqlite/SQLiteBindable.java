@@ -0,0 +1,20 @@
+package droidkit.sqlite;
+
+/**
+ * @author Daniel Serdyukov
+ */
+public interface SQLiteBindable {
+
+    void clearBindings();
+
+    void bindNull(int index);
+
+    void bindLong(int index, long value);
+
+    void bindDouble(int index, double value);
+
+    void bindString(int index, String value);
+
+    void bindBlob(int index, byte[] value);
+
+}
@@ -0,0 +1,148 @@
+package droidkit.sqlite;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.os.Build;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Serdyukov
+ */
+final class SQLiteBulkInsert {
+
+    /**
+     * SQLITE_MAX_VARIABLE_NUMBER
+     */
+    static final int MAX_BIND_ARGS = 999;
+
+    /**
+     * SQLITE_MAX_COMPOUND_SELECT, multi-row VALUES are compound selects before 3.8.8
+     */
+    static final int MAX_ROWS = 500;
+
+    private static final String INSERT = "INSERT INTO ";
+
+    private static final String INSERT_OR_ABORT = "INSERT OR ABORT INTO ";
+
+    private SQLiteBulkInsert() {
+        //no instance
+    }
+
+    /**
+     * Inserts the objects in input order, consecutive objects of the same kind (with or without id) are packed
+     * into multi-row statements.
+     */
+    static <T> void insertAll(@NonNull SQLiteClient client, @NonNull String table,
+                              @NonNull SQLiteRowWriter<T> writer, @NonNull List<T> objects) {
+        final String[] columns = writer.getColumns();
+        final int chunkSize = chunkSize(columns.length + 1);
+        final int size = objects.size();
+        int from = 0;
+        while (from < size) {
+            final boolean persisted = writer.getId(objects.get(from)) > 0;
+            int to = from + 1;
+            while (to < size && to - from < chunkSize && (writer.getId(objects.get(to)) > 0) == persisted) {
+                ++to;
+            }
+            final List<T> chunk = objects.subList(from, to);
+            if (persisted) {
+                insertChunk(client, buildSql(INSERT, table, columns, chunk.size()), columns, writer, chunk, true);
+            } else {
+                insertTransients(client, table, columns, writer, chunk);
+            }
+            from = to;
+        }
+    }
+
+    static int chunkSize(int rowSize) {
+        return Math.max(1, Math.min(MAX_ROWS, MAX_BIND_ARGS / rowSize));
+    }
+
+    @NonNull
+    static String buildSql(@NonNull String table, @NonNull String[] columns, int rows) {
+        return buildSql(INSERT, table, columns, rows);
+    }
+
+    @NonNull
+    static String buildSql(@NonNull String insert, @NonNull String table, @NonNull String[] columns, int rows) {
+        final StringBuilder row = new StringBuilder("?");
+        final StringBuilder sql = new StringBuilder(insert).append(table)
+                .append(SQLiteOp.LEFT_PARENTHESIS).append(BaseColumns._ID);
+        for (final String column : columns) {
+            sql.append(SQLiteOp.COMMA).append(column);
+            row.append(SQLiteOp.COMMA).append("?");
+        }
+        sql.append(SQLiteOp.RIGHT_PARENTHESIS);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            sql.append(" VALUES");
+            for (int i = 0; i < rows; ++i) {
+                if (i > 0) {
+                    sql.append(SQLiteOp.COMMA);
+                }
+                sql.append(SQLiteOp.LEFT_PARENTHESIS).append(row).append(SQLiteOp.RIGHT_PARENTHESIS);
+            }
+        } else {
+            // multi-row VALUES are not supported by sqlite < 3.7.11
+            for (int i = 0; i < rows; ++i) {
+                if (i > 0) {
+                    sql.append(" UNION ALL");
+                }
+                sql.append(" SELECT ").append(row);
+            }
+        }
+        return sql.append(";").toString();
+    }
+
+    /**
+     * Rows without explicit {@code _id} get sequential rowids within a single statement as long as it doesn't
+     * delete rows. {@code OR ABORT} overrides {@code ON CONFLICT REPLACE} of the table, a chunk that conflicts
+     * with existing rows is rolled back and inserted row by row with the conflict resolution of the table.
+     */
+    private static <T> void insertTransients(@NonNull SQLiteClient client, @NonNull String table,
+                                             @NonNull String[] columns, @NonNull SQLiteRowWriter<T> writer,
+                                             @NonNull List<T> objects) {
+        final int count = objects.size();
+        final long lastRowId;
+        try {
+            lastRowId = insertChunk(client, buildSql(INSERT_OR_ABORT, table, columns, count), columns, writer,
+                    objects, false);
+        } catch (SQLiteConstraintException e) {
+            final String sql = buildSql(INSERT, table, columns, 1);
+            for (final T object : objects) {
+                writer.setId(object, insertChunk(client, sql, columns, writer, Collections.singletonList(object),
+                        false));
+            }
+            return;
+        }
+        for (int i = 0; i < count; ++i) {
+            writer.setId(objects.get(i), lastRowId - count + 1 + i);
+        }
+    }
+
+    private static <T> long insertChunk(@NonNull SQLiteClient client, @NonNull String sql,
+                                        @NonNull String[] columns, @NonNull SQLiteRowWriter<T> writer,
+                                        @NonNull List<T> objects, boolean bindIds) {
+        final int rowSize = columns.length + 1;
+        final SQLiteStmt stmt = client.acquireStatement(sql);
+        try {
+            stmt.clearBindings();
+            for (int i = 0; i < objects.size(); ++i) {
+                final T object = objects.get(i);
+                final int offset = i * rowSize;
+                if (bindIds) {
+                    stmt.bindLong(offset + 1, writer.getId(object));
+                } else {
+                    stmt.bindNull(offset + 1);
+                }
+                writer.bindRow(stmt, offset + 1, object);
+            }
+            return stmt.executeInsert();
+        } finally {
+            client.releaseStatement(sql, stmt);
+        }
+    }
+
+}
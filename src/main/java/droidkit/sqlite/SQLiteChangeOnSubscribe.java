@@ -0,0 +1,44 @@
+package droidkit.sqlite;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Emits the table uri on every change notification until unsubscribed.
+ *
+ * @author Daniel Serdyukov
+ */
+class SQLiteChangeOnSubscribe implements Observable.OnSubscribe<Uri> {
+
+    private final Uri mUri;
+
+    SQLiteChangeOnSubscribe(@NonNull Uri uri) {
+        mUri = uri;
+    }
+
+    @Override
+    public void call(final Subscriber<? super Uri> subscriber) {
+        final ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onNext(mUri);
+                }
+            }
+        };
+        SQLite.obtainResolver().registerContentObserver(mUri, true, observer);
+        subscriber.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                SQLite.obtainResolver().unregisterContentObserver(observer);
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,95 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Row ids of one table changed between two versions of the change log, already collapsed
+ * (e.g. row inserted and then deleted is not reported at all).
+ *
+ * @author Daniel Serdyukov
+ */
+public final class SQLiteChangeSet {
+
+    private final String mTable;
+
+    private final long mVersion;
+
+    private final boolean mOverflow;
+
+    private final Set<Long> mInserted = new LinkedHashSet<>();
+
+    private final Set<Long> mUpdated = new LinkedHashSet<>();
+
+    private final Set<Long> mDeleted = new LinkedHashSet<>();
+
+    SQLiteChangeSet(@NonNull String table, long version, boolean overflow) {
+        mTable = table;
+        mVersion = version;
+        mOverflow = overflow;
+    }
+
+    @NonNull
+    public String getTable() {
+        return mTable;
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return true if part of the changes were already pruned from the change log and the caller must reload
+     */
+    public boolean isOverflow() {
+        return mOverflow;
+    }
+
+    public boolean isEmpty() {
+        return !mOverflow && mInserted.isEmpty() && mUpdated.isEmpty() && mDeleted.isEmpty();
+    }
+
+    @NonNull
+    public Set<Long> getInserted() {
+        return Collections.unmodifiableSet(mInserted);
+    }
+
+    @NonNull
+    public Set<Long> getUpdated() {
+        return Collections.unmodifiableSet(mUpdated);
+    }
+
+    @NonNull
+    public Set<Long> getDeleted() {
+        return Collections.unmodifiableSet(mDeleted);
+    }
+
+    public int size() {
+        return mInserted.size() + mUpdated.size() + mDeleted.size();
+    }
+
+    void onInsert(long rowId) {
+        if (mDeleted.remove(rowId)) {
+            mUpdated.add(rowId);
+        } else {
+            mInserted.add(rowId);
+        }
+    }
+
+    void onUpdate(long rowId) {
+        if (!mInserted.contains(rowId)) {
+            mUpdated.add(rowId);
+        }
+    }
+
+    void onDelete(long rowId) {
+        mUpdated.remove(rowId);
+        if (!mInserted.remove(rowId)) {
+            mDeleted.add(rowId);
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Row level change log of the tables. The log is a plain table, created on first use, so it is read on any
+ * connection without a transaction. It is filled by TEMP triggers on the writer connection, the triggers of a
+ * table live while at least one snapshot tracks it, and keep the log at {@link #MAX_CHANGES} rows.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteChangeTracker {
+
+    static final int MAX_CHANGES = 10000;
+
+    private static final String CHANGES = "droidkit_changes";
+
+    private static final int OP_INSERT = 1;
+
+    private static final int OP_UPDATE = 2;
+
+    private static final int OP_DELETE = 3;
+
+    private final Map<String, Integer> mRefs = new HashMap<>();
+
+    private final Map<String, Long> mTrackedSince = new HashMap<>();
+
+    private final SQLiteClient mClient;
+
+    private SQLiteDb mTriggersDb;
+
+    SQLiteChangeTracker(@NonNull SQLiteClient client) {
+        mClient = client;
+    }
+
+    /**
+     * The tracker is owned by the client, so it never outlives the connections it installed triggers on.
+     */
+    @NonNull
+    static SQLiteChangeTracker of(@NonNull SQLiteClient client) {
+        return client.getChangeTracker();
+    }
+
+    /**
+     * Starts tracking of the table, every call must be paired with {@link #untrack(String)}.
+     *
+     * @return current version of the change log, changes made after this call are reported by
+     * {@link #changesSince(String, long)}
+     */
+    synchronized long track(@NonNull String table) {
+        checkTriggers();
+        final Integer refs = mRefs.get(table);
+        if (refs == null) {
+            if (mRefs.isEmpty()) {
+                mClient.execute("CREATE TABLE IF NOT EXISTS " + CHANGES + "(" +
+                        "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "tbl TEXT NOT NULL, " +
+                        "row_id INTEGER NOT NULL, " +
+                        "op INTEGER NOT NULL);");
+                mClient.execute("DELETE FROM " + CHANGES + ";");
+            }
+            createTriggers(table);
+            mRefs.put(table, 1);
+        } else {
+            mRefs.put(table, refs + 1);
+        }
+        return currentVersion();
+    }
+
+    synchronized void untrack(@NonNull String table) {
+        final Integer refs = mRefs.get(table);
+        if (refs == null) {
+            return;
+        }
+        if (refs > 1) {
+            mRefs.put(table, refs - 1);
+            return;
+        }
+        mRefs.remove(table);
+        mTrackedSince.remove(table);
+        dropTriggers(table);
+        if (mRefs.isEmpty()) {
+            mClient.execute("DELETE FROM " + CHANGES + ";");
+        }
+    }
+
+    @NonNull
+    synchronized SQLiteChangeSet changesSince(@NonNull String table, long version) {
+        checkTriggers();
+        final long current = currentVersion();
+        final Long since = mTrackedSince.get(table);
+        if (since == null || version < since) {
+            return new SQLiteChangeSet(table, current, true);
+        }
+        final SQLiteChangeSet changes = readChanges(table, version, current);
+        if (version < prunedUpTo(current)) {
+            return new SQLiteChangeSet(table, current, true);
+        }
+        return changes;
+    }
+
+    /**
+     * TEMP triggers are bound to the writer connection, if it was reopened they are installed again and
+     * changes made in between are reported as overflow.
+     */
+    private void checkTriggers() {
+        final SQLiteDb db = mClient.getWritableDatabase();
+        if (mTriggersDb != db) {
+            mTriggersDb = db;
+            for (final String table : mRefs.keySet()) {
+                createTriggers(table);
+            }
+        }
+    }
+
+    private void createTriggers(@NonNull String table) {
+        final String trigger = CHANGES + "_" + table;
+        final String prune = " DELETE FROM " + CHANGES + " WHERE seq <= last_insert_rowid() - " +
+                MAX_CHANGES + ";";
+        mClient.execute("CREATE TEMP TRIGGER IF NOT EXISTS " + trigger + "_insert" +
+                " AFTER INSERT ON main." + table + " BEGIN" +
+                " INSERT INTO " + CHANGES + "(tbl, row_id, op)" +
+                " VALUES('" + table + "', NEW._id, " + OP_INSERT + ");" + prune +
+                " END;");
+        mClient.execute("CREATE TEMP TRIGGER IF NOT EXISTS " + trigger + "_update" +
+                " AFTER UPDATE ON main." + table + " BEGIN" +
+                " INSERT INTO " + CHANGES + "(tbl, row_id, op)" +
+                " SELECT '" + table + "', OLD._id, " + OP_DELETE + " WHERE OLD._id <> NEW._id;" +
+                " INSERT INTO " + CHANGES + "(tbl, row_id, op)" +
+                " VALUES('" + table + "', NEW._id, " + OP_UPDATE + ");" + prune +
+                " END;");
+        mClient.execute("CREATE TEMP TRIGGER IF NOT EXISTS " + trigger + "_delete" +
+                " AFTER DELETE ON main." + table + " BEGIN" +
+                " INSERT INTO " + CHANGES + "(tbl, row_id, op)" +
+                " VALUES('" + table + "', OLD._id, " + OP_DELETE + ");" + prune +
+                " END;");
+        mTrackedSince.put(table, currentVersion());
+    }
+
+    private void dropTriggers(@NonNull String table) {
+        final String trigger = CHANGES + "_" + table;
+        mClient.execute("DROP TRIGGER IF EXISTS temp." + trigger + "_insert;");
+        mClient.execute("DROP TRIGGER IF EXISTS temp." + trigger + "_update;");
+        mClient.execute("DROP TRIGGER IF EXISTS temp." + trigger + "_delete;");
+    }
+
+    private long currentVersion() {
+        return mClient.readForLong("SELECT IFNULL((SELECT seq FROM sqlite_sequence WHERE name = ?), 0);", CHANGES);
+    }
+
+    /**
+     * @return version up to which changes may be missing from the log
+     */
+    private long prunedUpTo(long current) {
+        return mClient.readForLong("SELECT IFNULL(MIN(seq) - 1, ?) FROM " + CHANGES + ";", current);
+    }
+
+    @NonNull
+    private SQLiteChangeSet readChanges(@NonNull String table, long version, long current) {
+        final SQLiteChangeSet changes = new SQLiteChangeSet(table, current, false);
+        final Cursor cursor = mClient.query("SELECT row_id, op FROM " + CHANGES +
+                " WHERE tbl = ? AND seq > ? AND seq <= ? ORDER BY seq;", table, version, current);
+        try {
+            while (cursor.moveToNext()) {
+                final long rowId = cursor.getLong(0);
+                switch (cursor.getInt(1)) {
+                    case OP_INSERT:
+                        changes.onInsert(rowId);
+                        break;
+                    case OP_UPDATE:
+                        changes.onUpdate(rowId);
+                        break;
+                    default:
+                        changes.onDelete(rowId);
+                        break;
+                }
+            }
+            return changes;
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+}
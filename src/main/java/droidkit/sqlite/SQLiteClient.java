@@ -1,6 +1,7 @@
 package droidkit.sqlite;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDoneException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
@@ -11,11 +12,8 @@ import java.io.Closeable;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import droidkit.io.IOUtils;
-import droidkit.util.ArraysUtils;
 import droidkit.util.Objects;
 import rx.functions.Func1;
 
@@ -41,108 +39,186 @@ public abstract class SQLiteClient implements Closeable {
         JODA_TIME_SUPPORT = DateTimeBinder.isSupported();
     }
 
-    private final ConcurrentMap<String, SQLiteStmt> mStatements = new ConcurrentHashMap<>();
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final SQLiteStmtCache mStatements;
+
+    private final SQLiteChangeTracker mChangeTracker = new SQLiteChangeTracker(this);
+
+    protected SQLiteClient() {
+        this(DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    protected SQLiteClient(int statementCacheSize) {
+        mStatements = new SQLiteStmtCache(statementCacheSize);
+    }
 
     public final boolean beginTransaction() {
         final SQLiteDb db = getWritableDatabase();
         if (!db.inTransaction()) {
             db.beginTransactionNonExclusive();
+            SQLiteNotifier.onBeginTransaction();
             return true;
         }
         return false;
     }
 
     public final void endTransaction() {
-        closeStatements();
         final SQLiteDb db = getWritableDatabase();
         if (db.inTransaction()) {
             db.setTransactionSuccessful();
             db.endTransaction();
+            SQLiteNotifier.onCommit();
         }
     }
 
     public final void rollbackTransaction() {
-        closeStatements();
         final SQLiteDb db = getWritableDatabase();
         if (db.inTransaction()) {
             db.endTransaction();
+            SQLiteNotifier.onRollback();
         }
     }
 
+    /**
+     * Values of types without a binder are bound as their {@link Object#toString()}.
+     */
     @NonNull
-    @SuppressWarnings("ConstantConditions")
     public final Cursor query(@NonNull String sql, @Nullable Object... bindArgs) {
-        return query(sql, ArraysUtils.transform(bindArgs, new Func1<Object, String>() {
-            @Override
-            public String call(Object arg) {
-                return arg == null ? null : arg.toString();
-            }
-        }, String.class));
+        return query(sql, SQLiteArgs.ofQuery(bindArgs));
+    }
+
+    @NonNull
+    public final Cursor query(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        return getReadableDatabase().query(sql, bindArgs);
     }
 
     public final void execute(@NonNull String sql, @Nullable Object... bindArgs) {
-        final SQLiteDb db = getWritableDatabase();
-        if (db.inTransaction()) {
-            final SQLiteStmt stmt = compileStatement(db, sql);
-            clearAndBindValues(stmt, bindArgs);
-            stmt.execute();
-        } else {
-            final SQLiteStmt stmt = db.compileStatement(sql);
-            clearAndBindValues(stmt, bindArgs);
+        execute(sql, SQLiteArgs.of(bindArgs));
+    }
+
+    public final void execute(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final SQLiteStmt stmt = acquireStatement(sql);
+        try {
+            bindArgs.bindTo(stmt);
             stmt.execute();
-            IOUtils.closeQuietly(stmt);
+        } finally {
+            releaseStatement(sql, stmt);
         }
     }
 
     public final long executeInsert(@NonNull String sql, @Nullable Object... bindArgs) {
-        final SQLiteDb db = getWritableDatabase();
-        if (db.inTransaction()) {
-            final SQLiteStmt stmt = compileStatement(db, sql);
-            clearAndBindValues(stmt, bindArgs);
+        return executeInsert(sql, SQLiteArgs.of(bindArgs));
+    }
+
+    public final long executeInsert(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final SQLiteStmt stmt = acquireStatement(sql);
+        try {
+            bindArgs.bindTo(stmt);
             return stmt.executeInsert();
-        } else {
-            final SQLiteStmt stmt = db.compileStatement(sql);
-            clearAndBindValues(stmt, bindArgs);
-            try {
-                return stmt.executeInsert();
-            } finally {
-                IOUtils.closeQuietly(stmt);
-            }
+        } finally {
+            releaseStatement(sql, stmt);
         }
     }
 
     public final int executeUpdateDelete(@NonNull String sql, @Nullable Object... bindArgs) {
-        final SQLiteDb db = getWritableDatabase();
-        if (db.inTransaction()) {
-            final SQLiteStmt stmt = compileStatement(db, sql);
-            clearAndBindValues(stmt, bindArgs);
+        return executeUpdateDelete(sql, SQLiteArgs.of(bindArgs));
+    }
+
+    public final int executeUpdateDelete(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final SQLiteStmt stmt = acquireStatement(sql);
+        try {
+            bindArgs.bindTo(stmt);
             return stmt.executeUpdateDelete();
-        } else {
-            final SQLiteStmt stmt = db.compileStatement(sql);
-            clearAndBindValues(stmt, bindArgs);
-            try {
-                return stmt.executeUpdateDelete();
-            } finally {
-                IOUtils.closeQuietly(stmt);
-            }
+        } finally {
+            releaseStatement(sql, stmt);
         }
     }
 
     @NonNull
     public final String queryForString(@NonNull String sql, @Nullable Object... bindArgs) {
-        final SQLiteDb db = getReadableDatabase();
-        final SQLiteStmt stmt = db.compileStatement(sql);
-        clearAndBindValues(stmt, bindArgs);
+        return queryForString(sql, SQLiteArgs.of(bindArgs));
+    }
+
+    @NonNull
+    public final String queryForString(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final SQLiteStmt stmt = acquireStatement(sql);
         try {
+            bindArgs.bindTo(stmt);
             return stmt.queryForString();
         } finally {
-            IOUtils.closeQuietly(stmt);
+            releaseStatement(sql, stmt);
+        }
+    }
+
+    public final long queryForLong(@NonNull String sql, @Nullable Object... bindArgs) {
+        return queryForLong(sql, SQLiteArgs.of(bindArgs));
+    }
+
+    public final long queryForLong(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final SQLiteStmt stmt = acquireStatement(sql);
+        try {
+            bindArgs.bindTo(stmt);
+            return stmt.queryForLong();
+        } finally {
+            releaseStatement(sql, stmt);
         }
     }
 
+    /**
+     * Scalar SELECT on a reader connection, so that counts and aggregates don't wait for the writer.
+     * {@link #queryForString(String, SQLiteArgs)} runs on the writer, use it for PRAGMAs.
+     */
+    @Nullable
+    public final String readForString(@NonNull String sql, @Nullable Object... bindArgs) {
+        return readForString(sql, SQLiteArgs.ofQuery(bindArgs));
+    }
+
+    @Nullable
+    public final String readForString(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final Cursor cursor = query(sql, bindArgs);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+            throw new SQLiteDoneException();
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    /**
+     * @see #readForString(String, SQLiteArgs)
+     */
+    public final long readForLong(@NonNull String sql, @Nullable Object... bindArgs) {
+        return readForLong(sql, SQLiteArgs.ofQuery(bindArgs));
+    }
+
+    public final long readForLong(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+        final Cursor cursor = query(sql, bindArgs);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+            throw new SQLiteDoneException();
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @NonNull
+    public final SQLiteStmtCache getStatementCache() {
+        return mStatements;
+    }
+
+    @NonNull
+    final SQLiteChangeTracker getChangeTracker() {
+        return mChangeTracker;
+    }
+
     @Override
     public void close() {
-        closeStatements();
+        mStatements.clear();
     }
 
     protected void onConfigure(@NonNull SQLiteDb db) {
@@ -162,15 +238,48 @@ public abstract class SQLiteClient implements Closeable {
         SQLiteSchema.createTriggers(db, criteria);
     }
 
-    @SuppressWarnings("squid:S1172")
+    /**
+     * Migrates the schema incrementally, existing rows are kept. A failed migration is rethrown, so the upgrade
+     * transaction is rolled back and the database stays at the old version, unless
+     * {@link #isDestructiveMigrationAllowed()}.
+     */
     protected void onUpgrade(@NonNull final SQLiteDb db, int oldVersion, int newVersion) {
-        SQLiteSchema.dropTables(db, new Func1<String, Boolean>() {
-            @Override
-            public Boolean call(String s) {
-                return true;
+        final boolean destructive = isDestructiveMigrationAllowed();
+        try {
+            SQLiteMigration.migrate(db, destructive, new SQLiteMigration.Progress() {
+                @Override
+                public void onProgress(int step, int steps) {
+                    onUpgradeProgress(step, steps);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (!destructive) {
+                throw e;
             }
-        });
-        onCreate(db);
+            Log.e("SQLiteClient", "Migration " + oldVersion + " -> " + newVersion + " failed, recreating schema", e);
+            SQLiteMigration.dropTemporaryTables(db);
+            SQLiteSchema.dropTables(db, new Func1<String, Boolean>() {
+                @Override
+                public Boolean call(String s) {
+                    return true;
+                }
+            });
+            onCreate(db);
+        }
+    }
+
+    /**
+     * @return true to let {@link #onUpgrade(SQLiteDb, int, int)} lose rows: a table which rows can't be copied
+     * to the new definition is recreated empty, and a failed migration drops and recreates all tables
+     */
+    protected boolean isDestructiveMigrationAllowed() {
+        return false;
+    }
+
+    /**
+     * Called after each statement of the {@link #onUpgrade(SQLiteDb, int, int)} migration.
+     */
+    protected void onUpgradeProgress(int step, int steps) {
     }
 
     @NonNull
@@ -186,42 +295,37 @@ public abstract class SQLiteClient implements Closeable {
     }
 
     @NonNull
-    private SQLiteStmt compileStatement(@NonNull SQLiteDb db, @NonNull String sql) {
-        SQLiteStmt stmt = mStatements.get(sql);
-        if (stmt == null) {
-            final SQLiteStmt newStmt = db.compileStatement(sql);
-            stmt = mStatements.putIfAbsent(sql, newStmt);
-            if (stmt == null) {
-                stmt = newStmt;
-            } else {
-                IOUtils.closeQuietly(stmt);
-            }
+    SQLiteStmt acquireStatement(@NonNull String sql) {
+        return mStatements.acquire(getWritableDatabase(), sql);
+    }
+
+    void releaseStatement(@NonNull String sql, @NonNull SQLiteStmt stmt) {
+        mStatements.release(sql, stmt);
+    }
+
+    static void bindValue(@NonNull SQLiteBindable target, int index, Object value) {
+        if (!tryBindValue(target, index, value)) {
+            throw new SQLiteException("Unsupported sqlite type: " + Objects.requireNonNull(value).getClass());
         }
-        return stmt;
     }
 
-    private void clearAndBindValues(@NonNull SQLiteStmt stmt, Object... bindArgs) {
-        stmt.clearBindings();
-        for (int index = 0; index < bindArgs.length; ++index) {
-            bindValue(stmt, index + 1, bindArgs[index]);
+    /**
+     * Query arguments were always bound as strings, so the types without a binder fall back to it.
+     */
+    static void bindQueryValue(@NonNull SQLiteBindable target, int index, Object value) {
+        if (!tryBindValue(target, index, value)) {
+            target.bindString(index, value.toString());
         }
     }
 
-    private void bindValue(@NonNull SQLiteStmt stmt, int index, Object value) {
+    private static boolean tryBindValue(@NonNull SQLiteBindable target, int index, Object value) {
         for (final ValueBinder binder : BINDERS) {
             if (binder.canBind(value)) {
-                binder.bind(stmt, index, value);
-                return;
+                binder.bind(target, index, value);
+                return true;
             }
         }
-        throw new SQLiteException("Unsupported sqlite type: " + Objects.requireNonNull(value).getClass());
-    }
-
-    private void closeStatements() {
-        for (final SQLiteStmt stmt : mStatements.values()) {
-            IOUtils.closeQuietly(stmt);
-        }
-        mStatements.clear();
+        return false;
     }
 
     //region value binders
@@ -229,7 +333,7 @@ public abstract class SQLiteClient implements Closeable {
 
         boolean canBind(@Nullable Object value);
 
-        void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value);
+        void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value);
 
     }
 
@@ -241,8 +345,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindNull(index);
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindNull(index);
         }
 
     }
@@ -255,8 +359,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindLong(index, Objects.requireNonNull((Number) value).longValue());
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindLong(index, Objects.requireNonNull((Number) value).longValue());
         }
 
     }
@@ -271,8 +375,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindDouble(index, Objects.requireNonNull((Number) value).doubleValue());
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindDouble(index, Objects.requireNonNull((Number) value).doubleValue());
         }
 
     }
@@ -285,12 +389,12 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
             final boolean bool = Objects.requireNonNull((Boolean) value);
             if (bool) {
-                stmt.bindLong(index, 1);
+                target.bindLong(index, 1);
             } else {
-                stmt.bindLong(index, 0);
+                target.bindLong(index, 0);
             }
         }
 
@@ -304,8 +408,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindBlob(index, Objects.requireNonNull((byte[]) value));
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindBlob(index, Objects.requireNonNull((byte[]) value));
         }
 
     }
@@ -318,8 +422,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindString(index, Objects.requireNonNull((String) value));
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindString(index, Objects.requireNonNull((String) value));
         }
 
     }
@@ -332,8 +436,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindString(index, Objects.requireNonNull((Enum) value).name());
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindString(index, Objects.requireNonNull((Enum) value).name());
         }
 
     }
@@ -356,8 +460,8 @@ public abstract class SQLiteClient implements Closeable {
         }
 
         @Override
-        public void bind(@NonNull SQLiteStmt stmt, int index, @Nullable Object value) {
-            stmt.bindLong(index, Objects.requireNonNull((DateTime) value).getMillis());
+        public void bind(@NonNull SQLiteBindable target, int index, @Nullable Object value) {
+            target.bindLong(index, Objects.requireNonNull((DateTime) value).getMillis());
         }
 
     }
@@ -16,6 +16,9 @@ public interface SQLiteDb extends Closeable {
     @NonNull
     Cursor query(@NonNull String sql, @Nullable String... bindArgs);
 
+    @NonNull
+    Cursor query(@NonNull String sql, @NonNull SQLiteArgs bindArgs);
+
     void beginTransactionNonExclusive();
 
     void setTransactionSuccessful();
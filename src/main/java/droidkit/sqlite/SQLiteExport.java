@@ -0,0 +1,113 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Base64;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Sequential export of query results as newline delimited JSON, one object per row. Blobs are written as
+ * base64 strings.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteExport {
+
+    static final String MIME_NDJSON = "application/x-ndjson";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SQLiteExport() {
+    }
+
+    /**
+     * Writes all rows from the current position, the stream is flushed but not closed.
+     *
+     * @return number of written rows
+     */
+    static int writeNdjson(@NonNull Cursor cursor, @NonNull OutputStream out) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8), BUFFER_SIZE);
+        final String[] names = cursor.getColumnNames();
+        final String[] keys = new String[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            final StringBuilder key = new StringBuilder(i == 0 ? "{" : ",");
+            quote(key, names[i]);
+            keys[i] = key.append(':').toString();
+        }
+        int rows = 0;
+        while (cursor.moveToNext()) {
+            for (int i = 0; i < keys.length; ++i) {
+                writer.write(keys[i]);
+                writeValue(writer, cursor, i);
+            }
+            writer.write(keys.length == 0 ? "{}\n" : "}\n");
+            ++rows;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void writeValue(@NonNull Writer writer, @NonNull Cursor cursor, int index) throws IOException {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                writer.write("null");
+                break;
+            case Cursor.FIELD_TYPE_INTEGER:
+                writer.write(Long.toString(cursor.getLong(index)));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                final double value = cursor.getDouble(index);
+                writer.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+                break;
+            case Cursor.FIELD_TYPE_BLOB:
+                writer.write('"');
+                writer.write(Base64.encodeToString(cursor.getBlob(index), Base64.NO_WRAP));
+                writer.write('"');
+                break;
+            default:
+                final StringBuilder text = new StringBuilder();
+                quote(text, cursor.getString(index));
+                writer.append(text);
+                break;
+        }
+    }
+
+    private static void quote(@NonNull StringBuilder out, @NonNull String value) {
+        out.append('"');
+        for (int i = 0, length = value.length(); i < length; ++i) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.append('\\').append(c);
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+
+}
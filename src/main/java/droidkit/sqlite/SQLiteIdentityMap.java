@@ -0,0 +1,104 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded per-type cache of mapped objects keyed by {@link BaseColumns#_ID}, so that repeated reads of the
+ * same row return the same instance. Values are soft referenced, the least recently used entries are evicted
+ * first.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteIdentityMap<T> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<Long, Reference<T>> mEntries;
+
+    SQLiteIdentityMap(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be >= 1, got " + maxSize);
+        }
+        mEntries = new LinkedHashMap<Long, Reference<T>>(16, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Reference<T>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Nullable
+    synchronized T get(long id) {
+        final Reference<T> ref = mEntries.get(id);
+        if (ref == null) {
+            return null;
+        }
+        final T object = ref.get();
+        if (object == null) {
+            mEntries.remove(id);
+        }
+        return object;
+    }
+
+    synchronized void put(long id, @NonNull T object) {
+        mEntries.put(id, new SoftReference<>(object));
+    }
+
+    synchronized void remove(long id) {
+        mEntries.remove(id);
+    }
+
+    /**
+     * Removes the entry of the instance, looked up by identity, for the callers that don't know its id.
+     *
+     * @return true if the instance was cached
+     */
+    synchronized boolean removeInstance(@NonNull T object) {
+        final Iterator<Reference<T>> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            final T cached = iterator.next().get();
+            if (cached == object) {
+                iterator.remove();
+                return true;
+            } else if (cached == null) {
+                iterator.remove();
+            }
+        }
+        return false;
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @param idColumn index of {@link BaseColumns#_ID}, rows are mapped without caching if it is negative
+     */
+    @NonNull
+    T map(@NonNull Cursor cursor, @NonNull RowMapper<T> mapper, @NonNull int[] columns, int idColumn) {
+        if (idColumn < 0) {
+            return mapper.map(cursor, columns);
+        }
+        final long id = cursor.getLong(idColumn);
+        T object = get(id);
+        if (object == null) {
+            object = mapper.map(cursor, columns);
+            put(id, object);
+        }
+        return object;
+    }
+
+}
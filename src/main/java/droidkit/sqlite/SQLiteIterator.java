@@ -0,0 +1,69 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Forward-only iterator over the query cursor, rows are not retained so memory does not grow with
+ * the result size. The cursor is closed when the last row is read or on {@link #close()}.
+ *
+ * @author Daniel Serdyukov
+ */
+public class SQLiteIterator<T> implements Iterator<T>, Closeable {
+
+    private final Cursor mCursor;
+
+    private final RowMapper<T> mMapper;
+
+    private int[] mColumns;
+
+    private boolean mHasNext;
+
+    SQLiteIterator(@NonNull Cursor cursor, @NonNull RowMapper<T> mapper) {
+        mCursor = cursor;
+        mMapper = mapper;
+        mHasNext = cursor.moveToFirst();
+        if (!mHasNext) {
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return mHasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!mHasNext) {
+            throw new NoSuchElementException();
+        }
+        if (mColumns == null) {
+            mColumns = mMapper.resolveColumns(mCursor);
+        }
+        final T object = mMapper.map(mCursor, mColumns);
+        mHasNext = mCursor.moveToNext();
+        if (!mHasNext) {
+            close();
+        }
+        return object;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        mHasNext = false;
+        IOUtils.closeQuietly(mCursor);
+    }
+
+}
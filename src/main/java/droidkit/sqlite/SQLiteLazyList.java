@@ -21,64 +21,112 @@ class SQLiteLazyList<T> extends AbstractList<T> {
 
     private static final Action1<CursorAnchor> AUTO_CLOSE = new AutoClose<>();
 
-    private final SQLiteRawQuery mQuery;
+    /**
+     * Position of objects added after the cursor was opened, they are never read from the cursor.
+     */
+    private static final int NO_POSITION = -1;
 
     private final Class<T> mType;
 
     private final List<T> mObjects;
 
-    private CursorAnchor mAnchor;
+    private final RowMapper<T> mMapper;
 
-    SQLiteLazyList(@NonNull SQLiteRawQuery query, @NonNull Cursor initialCursor, @NonNull Class<T> type) {
-        mQuery = query;
+    private final CursorAnchor mAnchor;
+
+    private int[] mPositions;
+
+    private int[] mColumns;
+
+    private int mIdColumn;
+
+    SQLiteLazyList(@NonNull Cursor cursor, @NonNull Class<T> type) {
         mType = type;
-        mAnchor = new CursorAnchor(initialCursor);
-        mObjects = new ArrayList<>(Collections.nCopies(mAnchor.getCount(), (T) null));
+        mMapper = SQLiteSchema.rowMapperOf(type);
+        mAnchor = new CursorAnchor(cursor);
+        final int count = mAnchor.getCount();
+        mObjects = new ArrayList<>(Collections.nCopies(count, (T) null));
+        mPositions = new int[Math.max(count, 1)];
+        for (int i = 0; i < count; ++i) {
+            mPositions[i] = i;
+        }
         Finalizer.create(this, mAnchor, AUTO_CLOSE);
     }
 
     @Override
     public T get(int location) {
-        if (mAnchor.moveToPosition(location)) {
-            T entry = mObjects.get(location);
-            if (entry == null) {
-                entry = instantiate(mAnchor.getCursor());
-                mObjects.set(location, entry);
+        T entry = mObjects.get(location);
+        if (entry == null) {
+            if (!mAnchor.moveToPosition(mPositions[location])) {
+                throw new ArrayIndexOutOfBoundsException(location);
             }
-            return entry;
+            entry = instantiate(mAnchor.getCursor());
+            mObjects.set(location, entry);
         }
-        throw new ArrayIndexOutOfBoundsException(location);
+        return entry;
     }
 
     @Override
     public void add(int location, T object) {
+        if (location < 0 || location > mObjects.size()) {
+            throw new ArrayIndexOutOfBoundsException(location);
+        }
         SQLite.save(object);
         mObjects.add(location, object);
-        mAnchor.anchor(mQuery.cursor());
+        insertPosition(location);
+        ++modCount;
     }
 
     @Override
     public T remove(int location) {
-        final Cursor oldCursor = mAnchor.getCursor();
-        if (oldCursor.moveToPosition(location)) {
-            final T entry = mObjects.remove(location);
-            final long rowId = Cursors.getLong(oldCursor, BaseColumns._ID);
+        final T entry = mObjects.get(location);
+        final int position = mPositions[location];
+        if (position == NO_POSITION) {
+            SQLite.remove(entry);
+        } else if (mAnchor.moveToPosition(position)) {
+            final long rowId = Cursors.getLong(mAnchor.getCursor(), BaseColumns._ID);
             SQLite.where(mType).equalTo(BaseColumns._ID, rowId).clear();
-            mAnchor.anchor(mQuery.cursor());
-            return entry;
+        } else {
+            throw new ArrayIndexOutOfBoundsException(location);
         }
-        throw new ArrayIndexOutOfBoundsException(location);
+        mObjects.remove(location);
+        removePosition(location);
+        ++modCount;
+        return entry;
     }
 
     @Override
     public int size() {
-        return mAnchor.getCount();
+        return mObjects.size();
+    }
+
+    private void insertPosition(int location) {
+        final int size = mObjects.size();
+        if (size > mPositions.length) {
+            final int[] positions = new int[Math.max(size, mPositions.length * 2)];
+            System.arraycopy(mPositions, 0, positions, 0, mPositions.length);
+            mPositions = positions;
+        }
+        System.arraycopy(mPositions, location, mPositions, location + 1, size - location - 1);
+        mPositions[location] = NO_POSITION;
+    }
+
+    private void removePosition(int location) {
+        System.arraycopy(mPositions, location + 1, mPositions, location, mObjects.size() - location);
     }
 
     @NonNull
     @SuppressWarnings("ConstantConditions")
     private T instantiate(@NonNull Cursor cursor) {
-        return SQLiteList.unpackOne(cursor, mType);
+        if (mColumns == null) {
+            mColumns = mMapper.resolveColumns(cursor);
+            mIdColumn = cursor.getColumnIndex(BaseColumns._ID);
+        }
+        final SQLiteIdentityMap<T> identityMap = SQLiteSchema.identityMapOf(mType);
+        if (identityMap == null) {
+            return mMapper.map(cursor, mColumns);
+        }
+        return identityMap.map(cursor, mMapper, mColumns, mIdColumn);
     }
 
 }
@@ -1,15 +1,13 @@
 package droidkit.sqlite;
 
 import android.database.Cursor;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
-import droidkit.dynamic.DynamicException;
-import droidkit.dynamic.MethodLookup;
-
 /**
  * @author Daniel Serdyukov
  */
@@ -21,24 +19,46 @@ public class SQLiteList<T> extends AbstractList<T> {
         mList = unpacked;
     }
 
+    static <T> SQLiteList<T> wrap(@NonNull List<T> list) {
+        return new SQLiteList<>(list);
+    }
+
     static <T> SQLiteList<T> unpack(@NonNull Cursor cursor, @NonNull Class<T> type) {
+        final SQLiteIdentityMap<T> identityMap = SQLiteSchema.identityMapOf(type);
+        if (identityMap == null) {
+            return unpack(cursor, SQLiteSchema.rowMapperOf(type));
+        }
+        final RowMapper<T> mapper = SQLiteSchema.rowMapperOf(type);
+        final List<T> list = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            final int[] columns = mapper.resolveColumns(cursor);
+            final int idColumn = cursor.getColumnIndex(BaseColumns._ID);
+            do {
+                list.add(identityMap.map(cursor, mapper, columns, idColumn));
+            } while (cursor.moveToNext());
+        }
+        return new SQLiteList<>(list);
+    }
+
+    static <T> SQLiteList<T> unpack(@NonNull Cursor cursor, @NonNull RowMapper<T> mapper) {
         final List<T> list = new ArrayList<>(cursor.getCount());
         if (cursor.moveToFirst()) {
+            final int[] columns = mapper.resolveColumns(cursor);
             do {
-                list.add(unpackOne(cursor, type));
+                list.add(mapper.map(cursor, columns));
             } while (cursor.moveToNext());
         }
         return new SQLiteList<>(list);
     }
 
     static <T> T unpackOne(@NonNull Cursor cursor, @NonNull Class<T> type) {
-        try {
-            return MethodLookup.global()
-                    .find(type.getName() + "$SQLiteHelper", "instantiate", Cursor.class)
-                    .invokeStatic(cursor);
-        } catch (DynamicException e) {
-            throw new SQLiteException("Can't instantiate object", e);
+        final RowMapper<T> mapper = SQLiteSchema.rowMapperOf(type);
+        final SQLiteIdentityMap<T> identityMap = SQLiteSchema.identityMapOf(type);
+        if (identityMap == null) {
+            return mapper.map(cursor, mapper.resolveColumns(cursor));
         }
+        return identityMap.map(cursor, mapper, mapper.resolveColumns(cursor),
+                cursor.getColumnIndex(BaseColumns._ID));
     }
 
     @Override
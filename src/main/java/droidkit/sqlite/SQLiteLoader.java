@@ -16,6 +16,10 @@ public class SQLiteLoader<T> extends AsyncTaskLoader<List<T>> {
 
     private final SQLiteQuery<T> mQuery;
 
+    private final Class<T> mType;
+
+    private volatile SQLiteSnapshot<T> mSnapshot;
+
     private ContentObserver mObserver;
 
     private List<T> mResult;
@@ -23,6 +27,7 @@ public class SQLiteLoader<T> extends AsyncTaskLoader<List<T>> {
     SQLiteLoader(@NonNull Context context, @NonNull SQLiteQuery<T> query, @NonNull Class<T> type) {
         super(context);
         mQuery = query;
+        mType = type;
         observeOn(SQLiteSchema.resolveUri(type));
     }
 
@@ -33,7 +38,13 @@ public class SQLiteLoader<T> extends AsyncTaskLoader<List<T>> {
 
     @Override
     public List<T> loadInBackground() {
-        return mQuery.list();
+        final SQLiteSnapshot<T> snapshot = mSnapshot;
+        if (snapshot == null) {
+            mSnapshot = SQLiteSnapshot.load(mQuery, mType);
+        } else {
+            mSnapshot = snapshot.update(mQuery, mType);
+        }
+        return mSnapshot.list();
     }
 
     @Override
@@ -67,6 +78,11 @@ public class SQLiteLoader<T> extends AsyncTaskLoader<List<T>> {
         onStopLoading();
         unregisterContentObserver();
         mResult = null;
+        final SQLiteSnapshot<T> snapshot = mSnapshot;
+        mSnapshot = null;
+        if (snapshot != null) {
+            snapshot.release();
+        }
     }
 
     private void registerContentObserver(@NonNull Uri uri) {
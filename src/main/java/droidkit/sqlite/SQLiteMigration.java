@@ -0,0 +1,510 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import droidkit.io.IOUtils;
+import rx.functions.Func1;
+
+/**
+ * Incremental upgrade of the generated schema. The DDL of the generated helpers is diffed against
+ * {@code sqlite_master}: missing tables, indices and triggers are created, changed indices and triggers are
+ * recreated, appended columns are added with {@code ALTER TABLE ADD COLUMN}. Tables are rebuilt through a copy
+ * of the common columns only if the change cannot be expressed with {@code ALTER TABLE}. Tables unknown to the
+ * schema are left as is.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteMigration {
+
+    static final String TEMP_PREFIX = "_migration_";
+
+    private static final Pattern HEADER = Pattern.compile("^\\s*CREATE\\s+(?:TEMP(?:ORARY)?\\s+)?(UNIQUE\\s+)?" +
+            "(TABLE|INDEX|TRIGGER|VIEW)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?[\"`\\[]?(\\w+)[\"`\\]]?",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ON_TABLE = Pattern.compile("\\sON\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern NOT_NULL = Pattern.compile("\\bNOT\\s+NULL\\b");
+
+    private static final Pattern DEFAULT = Pattern.compile("\\bDEFAULT\\s+(\\S+)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Set<String> TABLE_CONSTRAINTS = new HashSet<>(Arrays.asList(
+            "CONSTRAINT", "PRIMARY", "UNIQUE", "CHECK", "FOREIGN"));
+
+    private static final String TABLE = "TABLE";
+
+    private SQLiteMigration() {
+    }
+
+    /**
+     * Applies the migration statement by statement on the caller's transaction.
+     *
+     * @param destructive whether a table which rows can't be copied may be recreated empty, otherwise
+     *                    the migration fails before any statement is executed
+     * @return number of executed statements
+     */
+    static int migrate(@NonNull SQLiteDb db, boolean destructive, @Nullable Progress progress) {
+        final List<String> steps = plan(currentSchema(db), generatedSchema(), destructive);
+        for (int i = 0; i < steps.size(); ++i) {
+            execute(db, steps.get(i));
+            if (progress != null) {
+                progress.onProgress(i + 1, steps.size());
+            }
+        }
+        return steps.size();
+    }
+
+    /**
+     * Drops copies left by a failed rebuild.
+     */
+    static void dropTemporaryTables(@NonNull SQLiteDb db) {
+        final List<String> tables = new ArrayList<>();
+        final Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type = 'table'" +
+                " AND substr(name, 1, " + TEMP_PREFIX.length() + ") = ?;", TEMP_PREFIX);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        for (final String table : tables) {
+            execute(db, "DROP TABLE IF EXISTS " + table + ";");
+        }
+    }
+
+    @NonNull
+    static List<String> plan(@NonNull List<String> current, @NonNull List<String> target, boolean destructive) {
+        final Map<String, Entity> currentEntities = new LinkedHashMap<>();
+        for (final String sql : current) {
+            final Entity entity = Entity.parse(sql);
+            if (entity != null && !entity.mName.startsWith("sqlite_")) {
+                currentEntities.put(entity.mName, entity);
+            }
+        }
+        final Map<String, Entity> targetEntities = new LinkedHashMap<>();
+        for (final String sql : target) {
+            final Entity entity = Entity.parse(sql);
+            if (entity == null) {
+                throw new SQLiteException("Unsupported schema statement: %s", sql);
+            }
+            targetEntities.put(entity.mName, entity);
+        }
+        final Set<String> rebuilt = new HashSet<>();
+        final List<String> tableSteps = new ArrayList<>();
+        for (final Entity table : targetEntities.values()) {
+            if (TABLE.equals(table.mType)) {
+                planTable(currentEntities.get(table.mName), table, destructive, tableSteps, rebuilt);
+            }
+        }
+        final List<String> steps = new ArrayList<>();
+        final Set<String> kept = new HashSet<>();
+        for (final Entity entity : currentEntities.values()) {
+            if (TABLE.equals(entity.mType) || !targetEntities.containsKey(entity.mTable)) {
+                continue;
+            }
+            final Entity expected = targetEntities.get(entity.mName);
+            if (expected != null && expected.mSql.equals(entity.mSql) && !rebuilt.contains(entity.mTable)
+                    && ("INDEX".equals(entity.mType) || rebuilt.isEmpty())) {
+                kept.add(entity.mName);
+            } else if (!rebuilt.contains(entity.mTable)) {
+                // triggers and views may reference a rebuilt table, so they are recreated after the rename
+                steps.add("DROP " + entity.mType + " IF EXISTS " + entity.mName + ";");
+            }
+        }
+        steps.addAll(tableSteps);
+        for (final Entity entity : targetEntities.values()) {
+            if (!TABLE.equals(entity.mType) && !kept.contains(entity.mName)) {
+                steps.add(entity.mCreateSql);
+            }
+        }
+        return steps;
+    }
+
+    @NonNull
+    private static List<String> currentSchema(@NonNull SQLiteDb db) {
+        final List<String> schema = new ArrayList<>();
+        final Cursor cursor = db.query("SELECT sql FROM sqlite_master WHERE sql NOT NULL;");
+        try {
+            while (cursor.moveToNext()) {
+                schema.add(cursor.getString(0));
+            }
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        return schema;
+    }
+
+    @NonNull
+    private static List<String> generatedSchema() {
+        final Recorder recorder = new Recorder();
+        final Func1<String, Boolean> criteria = new Func1<String, Boolean>() {
+            @Override
+            public Boolean call(String s) {
+                return true;
+            }
+        };
+        SQLiteSchema.createTables(recorder, criteria);
+        SQLiteSchema.createRelationTables(recorder, criteria);
+        SQLiteSchema.createIndices(recorder, criteria);
+        SQLiteSchema.createTriggers(recorder, criteria);
+        return recorder.mStatements;
+    }
+
+    private static void planTable(@Nullable Entity current, @NonNull Entity target, boolean destructive,
+                                  @NonNull List<String> steps, @NonNull Set<String> rebuilt) {
+        if (current == null || !TABLE.equals(current.mType)) {
+            steps.add(target.mCreateSql);
+            return;
+        }
+        if (current.mSql.equals(target.mSql)) {
+            return;
+        }
+        final Definition from = Definition.parse(current.mSql);
+        final Definition to = Definition.parse(target.mSql);
+        if (from.mColumns.equals(to.mColumns) && from.mConstraints.equals(to.mConstraints)) {
+            return;
+        }
+        if (canAlter(from, to)) {
+            for (final String column : to.mColumns.keySet()) {
+                if (!from.mColumns.containsKey(column)) {
+                    steps.add("ALTER TABLE " + target.mName + " ADD COLUMN " + to.mColumns.get(column) + ";");
+                }
+            }
+            return;
+        }
+        rebuilt.add(target.mName);
+        final String temp = TEMP_PREFIX + target.mName;
+        final List<String> columns = new ArrayList<>();
+        for (final String column : to.mColumns.keySet()) {
+            if (from.mColumns.containsKey(column)) {
+                columns.add(column);
+            } else if (isRequired(to.mColumns.get(column))) {
+                if (!destructive) {
+                    throw new SQLiteException("Can't migrate %s, rows can't be copied: new column %s is NOT NULL" +
+                            " without default", target.mName, column);
+                }
+                Log.w("SQLiteMigration", "Table " + target.mName + " is recreated, " + column + " is required");
+                steps.add("DROP TABLE IF EXISTS " + target.mName + ";");
+                steps.add(target.mCreateSql);
+                return;
+            }
+        }
+        final String projection = TextUtils.join(", ", columns);
+        steps.add("CREATE TABLE " + temp + target.mBody + ";");
+        steps.add("INSERT INTO " + temp + "(" + projection + ") SELECT " + projection +
+                " FROM " + target.mName + ";");
+        steps.add("DROP TABLE " + target.mName + ";");
+        steps.add("ALTER TABLE " + temp + " RENAME TO " + target.mName + ";");
+    }
+
+    private static boolean canAlter(@NonNull Definition from, @NonNull Definition to) {
+        if (!from.mConstraints.equals(to.mConstraints)) {
+            return false;
+        }
+        for (final Map.Entry<String, String> column : from.mColumns.entrySet()) {
+            if (!column.getValue().equals(to.mColumns.get(column.getKey()))) {
+                return false;
+            }
+        }
+        for (final Map.Entry<String, String> column : to.mColumns.entrySet()) {
+            if (!from.mColumns.containsKey(column.getKey()) && !isAppendable(column.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @see <a href="https://www.sqlite.org/lang_altertable.html">ALTER TABLE ADD COLUMN restrictions</a>
+     */
+    private static boolean isAppendable(@NonNull String definition) {
+        final String upper = definition.toUpperCase(Locale.US);
+        if (upper.contains("PRIMARY KEY") || upper.contains("UNIQUE")) {
+            return false;
+        }
+        final Matcher defaultValue = DEFAULT.matcher(upper);
+        final String value = defaultValue.find() ? defaultValue.group(1) : null;
+        if (value != null && (value.startsWith("(") || value.startsWith("CURRENT_"))) {
+            return false;
+        }
+        final boolean nullDefault = value == null || "NULL".equals(value);
+        return !(NOT_NULL.matcher(upper).find() && nullDefault) && !(upper.contains("REFERENCES") && !nullDefault);
+    }
+
+    private static boolean isRequired(@NonNull String definition) {
+        final String upper = definition.toUpperCase(Locale.US);
+        return NOT_NULL.matcher(upper).find() && !DEFAULT.matcher(upper).find();
+    }
+
+    private static void execute(@NonNull SQLiteDb db, @NonNull String sql) {
+        final SQLiteStmt stmt = db.compileStatement(sql);
+        try {
+            stmt.execute();
+        } finally {
+            IOUtils.closeQuietly(stmt);
+        }
+    }
+
+    @NonNull
+    private static List<String> split(@NonNull String body) {
+        final List<String> parts = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < body.length(); ++i) {
+            final char c = body.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '[') {
+                quote = ']';
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if (c == ',' && depth == 0) {
+                parts.add(body.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(body.substring(start).trim());
+        return parts;
+    }
+
+    @NonNull
+    private static String unquote(@NonNull String name) {
+        if (name.length() > 1 && "\"`[".indexOf(name.charAt(0)) >= 0) {
+            return name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    interface Progress {
+
+        void onProgress(int step, int steps);
+
+    }
+
+    private static final class Entity {
+
+        final String mType;
+
+        final String mName;
+
+        final String mTable;
+
+        /**
+         * Statement as stored by sqlite_master, whitespace collapsed, used for comparison.
+         */
+        final String mSql;
+
+        /**
+         * Statement tail after the name.
+         */
+        final String mBody;
+
+        final String mCreateSql;
+
+        private Entity(String type, String name, String table, String sql, String body, String createSql) {
+            mType = type;
+            mName = name;
+            mTable = table;
+            mSql = sql;
+            mBody = body;
+            mCreateSql = createSql;
+        }
+
+        @Nullable
+        static Entity parse(@NonNull String createSql) {
+            final String sql = WHITESPACE.matcher(createSql.trim()).replaceAll(" ").replaceAll("\\s*;$", "");
+            final Matcher header = HEADER.matcher(sql);
+            if (!header.find()) {
+                return null;
+            }
+            final String type = header.group(2).toUpperCase(Locale.US);
+            final String name = header.group(3).toLowerCase(Locale.US);
+            final String body = sql.substring(header.end());
+            String table = name;
+            if (!TABLE.equals(type)) {
+                final Matcher onTable = ON_TABLE.matcher(body);
+                table = onTable.find() ? onTable.group(1).toLowerCase(Locale.US) : null;
+            }
+            final String unique = header.group(1) == null ? "" : "UNIQUE ";
+            return new Entity(type, name, table, "CREATE " + unique + type + " " + name + body, body, createSql);
+        }
+
+    }
+
+    private static final class Definition {
+
+        final Map<String, String> mColumns = new LinkedHashMap<>();
+
+        final List<String> mConstraints = new ArrayList<>();
+
+        @NonNull
+        static Definition parse(@NonNull String sql) {
+            final Definition definition = new Definition();
+            final int open = sql.indexOf('(');
+            final int close = sql.lastIndexOf(')');
+            if (open < 0 || close < open) {
+                throw new SQLiteException("Malformed table definition: %s", sql);
+            }
+            for (final String part : split(sql.substring(open + 1, close))) {
+                final String[] tokens = part.split(" ", 2);
+                if (TABLE_CONSTRAINTS.contains(tokens[0].toUpperCase(Locale.US))) {
+                    definition.mConstraints.add(part);
+                } else {
+                    definition.mColumns.put(unquote(tokens[0]).toLowerCase(Locale.US), part);
+                }
+            }
+            Collections.sort(definition.mConstraints);
+            return definition;
+        }
+
+    }
+
+    /**
+     * Collects the DDL of the generated helpers instead of executing it. Statements are recorded on execution,
+     * queries see an empty database.
+     */
+    private static final class Recorder implements SQLiteDb {
+
+        final List<String> mStatements = new ArrayList<>();
+
+        private int mTransactions;
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean enable) {
+        }
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull String sql, @Nullable String... bindArgs) {
+            return new MatrixCursor(new String[0], 0);
+        }
+
+        @NonNull
+        @Override
+        public Cursor query(@NonNull String sql, @NonNull SQLiteArgs bindArgs) {
+            return new MatrixCursor(new String[0], 0);
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            ++mTransactions;
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+        }
+
+        @Override
+        public void endTransaction() {
+            mTransactions = Math.max(0, mTransactions - 1);
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return mTransactions > 0;
+        }
+
+        @Override
+        public SQLiteStmt compileStatement(@NonNull String sql) {
+            return new Statement(sql);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final class Statement implements SQLiteStmt {
+
+            private final String mSql;
+
+            Statement(@NonNull String sql) {
+                mSql = sql;
+            }
+
+            @Override
+            public void execute() {
+                mStatements.add(mSql);
+            }
+
+            @Override
+            public long executeInsert() {
+                mStatements.add(mSql);
+                return -1;
+            }
+
+            @Override
+            public int executeUpdateDelete() {
+                mStatements.add(mSql);
+                return 0;
+            }
+
+            @Override
+            public String queryForString() {
+                return null;
+            }
+
+            @Override
+            public long queryForLong() {
+                return 0;
+            }
+
+            @Override
+            public void clearBindings() {
+            }
+
+            @Override
+            public void bindNull(int index) {
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+            }
+
+            @Override
+            public void bindBlob(int index, byte[] value) {
+            }
+
+            @Override
+            public void close() {
+            }
+
+        }
+
+    }
+
+}
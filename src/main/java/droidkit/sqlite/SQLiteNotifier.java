@@ -0,0 +1,145 @@
+package droidkit.sqlite;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import droidkit.concurrent.AsyncQueue;
+
+/**
+ * Coalesces table change notifications: inside a transaction uris are collected per thread and fired once
+ * on commit (dropped on rollback), outside of it they are fired at once or after the debounce window.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteNotifier {
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private static final AtomicLong DEBOUNCE = new AtomicLong();
+
+    private static final Map<Uri, Boolean> PENDING = new LinkedHashMap<>();
+
+    private static Future<?> sFlush;
+
+    private SQLiteNotifier() {
+    }
+
+    static void setDebounce(long delayMs) {
+        DEBOUNCE.set(Math.max(0, delayMs));
+    }
+
+    static void mute(@NonNull Class<?> type) {
+        final Map<Class<?>, Integer> mutes = STATE.get().mMutes;
+        final Integer count = mutes.get(type);
+        mutes.put(type, count == null ? 1 : count + 1);
+    }
+
+    static void unmute(@NonNull Class<?> type) {
+        final Map<Class<?>, Integer> mutes = STATE.get().mMutes;
+        final Integer count = mutes.get(type);
+        if (count == null || count <= 1) {
+            mutes.remove(type);
+        } else {
+            mutes.put(type, count - 1);
+        }
+    }
+
+    static boolean isMuted(@NonNull Class<?> type) {
+        return STATE.get().mMutes.containsKey(type);
+    }
+
+    static void notifyChange(@NonNull Uri uri, boolean syncToNetwork) {
+        final State state = STATE.get();
+        if (state.mInTransaction) {
+            SQLiteQueryCache.invalidate(uri);
+            put(state.mDirty, uri, syncToNetwork);
+        } else {
+            dispatch(uri, syncToNetwork);
+        }
+    }
+
+    static void onBeginTransaction() {
+        STATE.get().mInTransaction = true;
+    }
+
+    static void onCommit() {
+        final State state = STATE.get();
+        state.mInTransaction = false;
+        if (!state.mDirty.isEmpty()) {
+            final Map<Uri, Boolean> dirty = new LinkedHashMap<>(state.mDirty);
+            state.mDirty.clear();
+            for (final Map.Entry<Uri, Boolean> entry : dirty.entrySet()) {
+                dispatch(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    static void onRollback() {
+        final State state = STATE.get();
+        state.mInTransaction = false;
+        state.mDirty.clear();
+    }
+
+    static void flush() {
+        final Map<Uri, Boolean> pending;
+        synchronized (PENDING) {
+            pending = new LinkedHashMap<>(PENDING);
+            PENDING.clear();
+            if (sFlush != null) {
+                sFlush.cancel(false);
+                sFlush = null;
+            }
+        }
+        for (final Map.Entry<Uri, Boolean> entry : pending.entrySet()) {
+            SQLite.obtainResolver().notifyChange(entry.getKey(), null, entry.getValue());
+        }
+    }
+
+    private static void dispatch(@NonNull Uri uri, boolean syncToNetwork) {
+        // again after commit, readers of other connections may have cached rows of the old snapshot meanwhile
+        SQLiteQueryCache.invalidate(uri);
+        final long debounce = DEBOUNCE.get();
+        if (debounce > 0) {
+            synchronized (PENDING) {
+                put(PENDING, uri, syncToNetwork);
+                if (sFlush == null) {
+                    sFlush = AsyncQueue.invoke(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, debounce);
+                }
+            }
+        } else {
+            SQLite.obtainResolver().notifyChange(uri, null, syncToNetwork);
+        }
+    }
+
+    private static void put(@NonNull Map<Uri, Boolean> uris, @NonNull Uri uri, boolean syncToNetwork) {
+        final Boolean sync = uris.get(uri);
+        uris.put(uri, syncToNetwork || (sync != null && sync));
+    }
+
+    private static final class State {
+
+        final Map<Class<?>, Integer> mMutes = new HashMap<>();
+
+        final Map<Uri, Boolean> mDirty = new LinkedHashMap<>();
+
+        boolean mInTransaction;
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Per-type write operations, registered once with the table info, so that single object writes are plain
+ * interface calls instead of a reflective lookup of the generated helper.
+ *
+ * @author Daniel Serdyukov
+ */
+public interface SQLiteOps<T> {
+
+    void save(@NonNull SQLiteClient client, @NonNull T object);
+
+    void update(@NonNull SQLiteClient client, @NonNull T object);
+
+    void remove(@NonNull SQLiteClient client, @NonNull T object);
+
+}
@@ -0,0 +1,161 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Read-only list that loads the query result page by page and keeps at most {@code maxPages} pages in memory.
+ * The size is counted once, the list is not a snapshot: positions of rows deleted since then read as
+ * {@code null}, rows inserted since then may shift the pages loaded later.
+ *
+ * @author Daniel Serdyukov
+ */
+class SQLitePagedList<T> extends AbstractList<T> implements RandomAccess {
+
+    static final int DEFAULT_MAX_PAGES = 3;
+
+    private static final String TAG = "SQLitePagedList";
+
+    private final String mSql;
+
+    private final Object[] mBindArgs;
+
+    private final RowMapper<T> mMapper;
+
+    private final int mPageSize;
+
+    private final ExecutorService mPrefetchExecutor;
+
+    private final Map<Integer, List<T>> mPages;
+
+    private final Map<Integer, Future<List<T>>> mPending = new HashMap<>();
+
+    private final int mSize;
+
+    /**
+     * @param sql query without LIMIT, pages are read by appending LIMIT and OFFSET to it
+     */
+    SQLitePagedList(@NonNull String sql, @NonNull Object[] bindArgs, @NonNull Class<T> type,
+                    int pageSize, final int maxPages, @NonNull ExecutorService prefetchExecutor) {
+        if (pageSize < 1 || maxPages < 1) {
+            throw new IllegalArgumentException("pageSize and maxPages must be positive");
+        }
+        mSql = sql;
+        mBindArgs = bindArgs;
+        mMapper = SQLiteSchema.rowMapperOf(type);
+        mPageSize = pageSize;
+        mPrefetchExecutor = prefetchExecutor;
+        mPages = new LinkedHashMap<Integer, List<T>>(maxPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        mSize = (int) SQLite.obtainClient().readForLong("SELECT COUNT(*) FROM (" + sql + ")", bindArgs);
+    }
+
+    @Override
+    public T get(int location) {
+        if (location < 0 || location >= mSize) {
+            throw new ArrayIndexOutOfBoundsException(location);
+        }
+        final int page = location / mPageSize;
+        final int offset = location % mPageSize;
+        final List<T> objects = obtainPage(page);
+        if (offset >= mPageSize / 2 && (page + 1) * mPageSize < mSize) {
+            prefetch(page + 1);
+        }
+        if (offset < objects.size()) {
+            return objects.get(offset);
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    int loadedPages() {
+        synchronized (mPages) {
+            return mPages.size();
+        }
+    }
+
+    @NonNull
+    private List<T> obtainPage(int page) {
+        final Future<List<T>> pending;
+        synchronized (mPages) {
+            final List<T> objects = mPages.get(page);
+            if (objects != null) {
+                return objects;
+            }
+            pending = mPending.get(page);
+        }
+        List<T> objects = null;
+        if (pending != null) {
+            try {
+                objects = pending.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(TAG, e.getMessage(), e);
+            }
+        }
+        if (objects == null) {
+            objects = loadPage(page);
+        }
+        synchronized (mPages) {
+            mPages.put(page, objects);
+        }
+        return objects;
+    }
+
+    private void prefetch(final int page) {
+        synchronized (mPages) {
+            if (mPages.containsKey(page) || mPending.containsKey(page)) {
+                return;
+            }
+            mPending.put(page, mPrefetchExecutor.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    try {
+                        final List<T> objects = loadPage(page);
+                        synchronized (mPages) {
+                            mPages.put(page, objects);
+                        }
+                        return objects;
+                    } finally {
+                        synchronized (mPages) {
+                            mPending.remove(page);
+                        }
+                    }
+                }
+            }));
+        }
+    }
+
+    @NonNull
+    private List<T> loadPage(int page) {
+        final Cursor cursor = SQLite.obtainClient().query(mSql + " LIMIT " + mPageSize +
+                " OFFSET " + (page * mPageSize), mBindArgs);
+        try {
+            return SQLiteList.unpack(cursor, mMapper);
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+}
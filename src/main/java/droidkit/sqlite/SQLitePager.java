@@ -0,0 +1,190 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Keyset pagination: every page starts right after the sort key of the previous page's last row, so deep
+ * pages cost the same as the first one. Sort keys must be plain NOT NULL columns, expressions are rejected
+ * as their values can't be read back from the row, {@code _id} is appended as the tie breaker if it is not
+ * the last sort column.
+ *
+ * @author Daniel Serdyukov
+ */
+public class SQLitePager<T> {
+
+    private static final Pattern COLUMN = Pattern.compile("^\\w+(?:\\.\\w+)?$");
+
+    private final RowMapper<T> mMapper;
+
+    private final String mTable;
+
+    private final String mWhere;
+
+    private final List<Object> mBindArgs;
+
+    private final String[] mColumns;
+
+    private final boolean[] mDescending;
+
+    private final String mOrderBy;
+
+    private final int mPageSize;
+
+    private Object[] mLastKey;
+
+    private boolean mExhausted;
+
+    SQLitePager(@NonNull Class<T> type, @NonNull String table, @Nullable String where,
+                @NonNull List<Object> bindArgs, @NonNull List<String> orderBy, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        final List<String> columns = new ArrayList<>(orderBy.size() + 1);
+        final List<Boolean> descending = new ArrayList<>(orderBy.size() + 1);
+        for (final String term : orderBy) {
+            final boolean desc = term.endsWith(SQLiteOp.DESC);
+            final String column = term.substring(0, term.length() - (desc ? SQLiteOp.DESC : SQLiteOp.ASC).length());
+            if (!COLUMN.matcher(column).matches()) {
+                throw new IllegalArgumentException("Sort key must be a column, got " + column);
+            }
+            columns.add(column);
+            descending.add(desc);
+        }
+        if (columns.isEmpty() || !BaseColumns._ID.equals(columns.get(columns.size() - 1))) {
+            columns.add(BaseColumns._ID);
+            descending.add(false);
+        }
+        mMapper = SQLiteSchema.rowMapperOf(type);
+        mTable = table;
+        mWhere = where;
+        mBindArgs = new ArrayList<>(bindArgs);
+        mColumns = columns.toArray(new String[columns.size()]);
+        mDescending = new boolean[mColumns.length];
+        final List<String> terms = new ArrayList<>(mColumns.length);
+        for (int i = 0; i < mColumns.length; ++i) {
+            mDescending[i] = descending.get(i);
+            terms.add(mColumns[i] + (mDescending[i] ? SQLiteOp.DESC : SQLiteOp.ASC));
+        }
+        mOrderBy = TextUtils.join(SQLiteOp.COMMA, terms);
+        mPageSize = pageSize;
+    }
+
+    /**
+     * Expands the row value comparison {@code (a, b) > (?, ?)}, not available before SQLite 3.15, into
+     * {@code a >= ? AND (a > ? OR (a = ? AND b > ?))}. The leading range lets SQLite seek the index.
+     */
+    @NonNull
+    static String seekPredicate(@NonNull String[] columns, @NonNull boolean[] descending) {
+        final StringBuilder sql = new StringBuilder()
+                .append(columns[0]).append(descending[0] ? " <= ?" : " >= ?")
+                .append(SQLiteOp.AND).append(SQLiteOp.LEFT_PARENTHESIS);
+        for (int i = 0; i < columns.length; ++i) {
+            if (i > 0) {
+                sql.append(SQLiteOp.OR);
+            }
+            sql.append(SQLiteOp.LEFT_PARENTHESIS);
+            for (int j = 0; j < i; ++j) {
+                sql.append(columns[j]).append(SQLiteOp.EQ).append(SQLiteOp.AND);
+            }
+            sql.append(columns[i]).append(descending[i] ? SQLiteOp.LT : SQLiteOp.GT)
+                    .append(SQLiteOp.RIGHT_PARENTHESIS);
+        }
+        return sql.append(SQLiteOp.RIGHT_PARENTHESIS).toString();
+    }
+
+    /**
+     * @return bind values for {@link #seekPredicate(String[], boolean[])}
+     */
+    @NonNull
+    static List<Object> seekArgs(@NonNull Object[] key) {
+        final List<Object> args = new ArrayList<>(1 + key.length * (key.length + 1) / 2);
+        args.add(key[0]);
+        for (int i = 0; i < key.length; ++i) {
+            for (int j = 0; j <= i; ++j) {
+                args.add(key[j]);
+            }
+        }
+        return args;
+    }
+
+    public boolean hasNext() {
+        return !mExhausted;
+    }
+
+    @NonNull
+    public List<T> next() {
+        if (mExhausted) {
+            return Collections.emptyList();
+        }
+        final StringBuilder where = new StringBuilder();
+        final List<Object> bindArgs = new ArrayList<>(mBindArgs);
+        if (!TextUtils.isEmpty(mWhere)) {
+            where.append(SQLiteOp.LEFT_PARENTHESIS).append(mWhere).append(SQLiteOp.RIGHT_PARENTHESIS);
+        }
+        if (mLastKey != null) {
+            if (where.length() > 0) {
+                where.append(SQLiteOp.AND);
+            }
+            where.append(SQLiteOp.LEFT_PARENTHESIS).append(seekPredicate(mColumns, mDescending))
+                    .append(SQLiteOp.RIGHT_PARENTHESIS);
+            bindArgs.addAll(seekArgs(mLastKey));
+        }
+        final Cursor cursor = SQLite.obtainClient().query(SQLiteQueryBuilder.buildQueryString(false, mTable, null,
+                where.toString(), null, null, mOrderBy, String.valueOf(mPageSize)),
+                bindArgs.toArray(new Object[bindArgs.size()]));
+        try {
+            final List<T> page = SQLiteList.unpack(cursor, mMapper);
+            if (cursor.moveToLast()) {
+                mLastKey = readKey(cursor);
+            }
+            mExhausted = page.size() < mPageSize;
+            return page;
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    public void reset() {
+        mLastKey = null;
+        mExhausted = false;
+    }
+
+    @NonNull
+    private Object[] readKey(@NonNull Cursor cursor) {
+        final Object[] key = new Object[mColumns.length];
+        for (int i = 0; i < mColumns.length; ++i) {
+            final String column = mColumns[i];
+            final int index = cursor.getColumnIndexOrThrow(column.substring(column.lastIndexOf('.') + 1));
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    key[i] = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    key[i] = cursor.getDouble(index);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    key[i] = cursor.getBlob(index);
+                    break;
+                case Cursor.FIELD_TYPE_NULL:
+                    throw new SQLiteException("Sort key column %s is NULL", column);
+                default:
+                    key[i] = cursor.getString(index);
+                    break;
+            }
+        }
+        return key;
+    }
+
+}
@@ -1,13 +1,18 @@
 package droidkit.sqlite;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.provider.BaseColumns;
 import android.support.annotation.Keep;
 import android.support.annotation.NonNull;
@@ -15,7 +20,14 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,15 +35,46 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import droidkit.dynamic.DynamicException;
 import droidkit.dynamic.MethodLookup;
+import droidkit.io.IOUtils;
 import droidkit.util.Objects;
-import droidkit.util.Sets;
-import rx.functions.Func1;
 
 /**
  * @author Daniel Serdyukov
  */
 public class SQLiteProvider extends ContentProvider {
 
+    /**
+     * Query parameter, max number of rows returned by {@link #query(Uri, String[], String, String[], String)}.
+     */
+    public static final String QUERY_LIMIT = "limit";
+
+    /**
+     * Query parameter, number of rows skipped by {@link #query(Uri, String[], String, String[], String)}.
+     */
+    public static final String QUERY_OFFSET = "offset";
+
+    /**
+     * Query parameter, {@code true} or {@code 1} to select distinct rows.
+     */
+    public static final String QUERY_DISTINCT = "distinct";
+
+    /**
+     * Query parameter, GROUP BY clause without the keywords.
+     */
+    public static final String QUERY_GROUP_BY = "groupBy";
+
+    /**
+     * Query parameter of {@link #openFile(Uri, String)}, export format.
+     */
+    public static final String QUERY_EXPORT = "export";
+
+    /**
+     * Query parameter of {@link #openFile(Uri, String)}, comma separated columns to export.
+     */
+    public static final String QUERY_COLUMNS = "columns";
+
+    public static final String EXPORT_NDJSON = "ndjson";
+
     private static final List<Class<?>> HELPERS = new CopyOnWriteArrayList<>();
 
     private static final String APP_DB = "application.db";
@@ -46,6 +89,17 @@ public class SQLiteProvider extends ContentProvider {
 
     private static final String CONTEXT_IS_NULL = "Context is null";
 
+    private static final int MAX_TEMPLATES = 64;
+
+    private final ThreadLocal<Map<Uri, Boolean>> mBatchUris = new ThreadLocal<>();
+
+    private final Map<TemplateKey, Template> mTemplates = new LinkedHashMap<TemplateKey, Template>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TemplateKey, Template> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+
     private SQLiteClient mClient;
 
     @Keep
@@ -53,6 +107,24 @@ public class SQLiteProvider extends ContentProvider {
         HELPERS.add(helper);
     }
 
+    @Nullable
+    private static String limitOf(@NonNull Uri uri) {
+        final String limit = uri.getQueryParameter(QUERY_LIMIT);
+        final String offset = uri.getQueryParameter(QUERY_OFFSET);
+        checkDigitsOnly(QUERY_LIMIT, limit);
+        checkDigitsOnly(QUERY_OFFSET, offset);
+        if (offset != null) {
+            return offset + ", " + (limit == null ? "-1" : limit);
+        }
+        return limit;
+    }
+
+    private static void checkDigitsOnly(@NonNull String name, @Nullable String value) {
+        if (value != null && (value.isEmpty() || !TextUtils.isDigitsOnly(value))) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'");
+        }
+    }
+
     private static int matchUri(@NonNull Uri uri) {
         final List<String> pathSegments = uri.getPathSegments();
         final int pathSegmentsSize = pathSegments.size();
@@ -94,12 +166,14 @@ public class SQLiteProvider extends ContentProvider {
         final Cursor cursor;
         Uri notificationUri = uri;
         if (URI_MATCH_ID == matchUri(uri)) {
-            cursor = mClient.query(SQLiteQueryBuilder.buildQueryString(false, table, null, SQLiteOp.ID_EQ,
+            cursor = mClient.query(SQLiteQueryBuilder.buildQueryString(false, table, columns, SQLiteOp.ID_EQ,
                     null, null, orderBy, null), new String[]{uri.getLastPathSegment()});
             notificationUri = SQLiteSchema.baseUri(uri, table);
         } else {
-            cursor = mClient.getReadableDatabase().query(SQLiteQueryBuilder.buildQueryString(false, table, columns,
-                    where, null, null, orderBy, null), bindArgs);
+            final String distinct = uri.getQueryParameter(QUERY_DISTINCT);
+            cursor = mClient.getReadableDatabase().query(SQLiteQueryBuilder.buildQueryString(
+                    "true".equalsIgnoreCase(distinct) || "1".equals(distinct), table, columns, where,
+                    uri.getQueryParameter(QUERY_GROUP_BY), null, orderBy, limitOf(uri)), bindArgs);
         }
         cursor.setNotificationUri(Objects.requireNonNull(getContext(), CONTEXT_IS_NULL)
                 .getContentResolver(), notificationUri);
@@ -126,23 +200,110 @@ public class SQLiteProvider extends ContentProvider {
             values.put(BaseColumns._ID, uri.getLastPathSegment());
             notificationUri = SQLiteSchema.baseUri(uri, table);
         }
-        final Set<String> columns = values.keySet();
-        final long rowId = mClient.executeInsert("INSERT INTO " + table + "(" + TextUtils.join(", ", columns) + ")" +
-                        " VALUES" + "(" + TextUtils.join(", ", Collections.nCopies(columns.size(), "?")) + ");",
-                Sets.toArray(Sets.transform(values.valueSet(),
-                        new Func1<Map.Entry<String, Object>, Object>() {
-                            @Override
-                            public Object call(Map.Entry<String, Object> entry) {
-                                return entry.getValue();
-                            }
-                        }), Object.class));
-        if (shouldNotifyChange(notificationUri)) {
-            Objects.requireNonNull(getContext(), CONTEXT_IS_NULL).getContentResolver()
-                    .notifyChange(notificationUri, null, shouldSyncToNetwork(notificationUri));
-        }
+        final Template template = templateOf(table, values.keySet());
+        final long rowId = mClient.executeInsert(template.mInsertSql, template.bind(values, null));
+        SQLiteSchema.evictRow(table, rowId);
+        notifyChange(notificationUri);
         return ContentUris.withAppendedId(notificationUri, rowId);
     }
 
+    /**
+     * Streams rows of {@code ?export=ndjson} uris through a pipe as newline delimited JSON, so that bulk
+     * consumers read sequentially instead of pulling cursor windows. Query parameters of
+     * {@link #query(Uri, String[], String, String[], String)} apply, {@code ?columns=} is a comma separated
+     * projection.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!EXPORT_NDJSON.equals(uri.getQueryParameter(QUERY_EXPORT))) {
+            return super.openFile(uri, mode);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export is read-only, mode '" + mode + "' for " + uri);
+        }
+        final String columns = uri.getQueryParameter(QUERY_COLUMNS);
+        final Cursor cursor = query(uri, columns == null ? null : TextUtils.split(columns, ","), null, null, null);
+        return openPipeHelper(uri, SQLiteExport.MIME_NDJSON, null, cursor, new PipeDataWriter<Cursor>() {
+            @Override
+            public void writeDataToPipe(@NonNull ParcelFileDescriptor output, @NonNull Uri uri,
+                                        @NonNull String mimeType, @Nullable Bundle opts, @Nullable Cursor rows) {
+                final FileOutputStream stream = new FileOutputStream(output.getFileDescriptor());
+                try {
+                    SQLiteExport.writeNdjson(Objects.requireNonNull(rows, "Cursor is null"), stream);
+                } catch (IOException e) {
+                    Log.e("SQLiteProvider", "Export of " + uri + " failed", e);
+                } finally {
+                    IOUtils.closeQuietly(stream);
+                    IOUtils.closeQuietly(rows);
+                }
+            }
+        });
+    }
+
+    /**
+     * Inserts all rows in one transaction, SQL is built once per distinct column set and the change
+     * notification is sent once, on commit.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        if (URI_MATCH_ID == matchUri(uri)) {
+            return super.bulkInsert(uri, values);
+        }
+        final String table = SQLiteSchema.tableOf(uri);
+        boolean transaction = mClient.beginTransaction();
+        try {
+            for (final ContentValues row : values) {
+                final Template template = templateOf(table, row.keySet());
+                SQLiteSchema.evictRow(table, mClient.executeInsert(template.mInsertSql, template.bind(row, null)));
+            }
+            if (values.length > 0) {
+                notifyChange(uri);
+            }
+            if (transaction) {
+                mClient.endTransaction();
+                transaction = false;
+            }
+        } finally {
+            if (transaction) {
+                mClient.rollbackTransaction();
+            }
+        }
+        return values.length;
+    }
+
+    /**
+     * Applies all operations in one transaction, changes are notified once per table after commit.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final Map<Uri, Boolean> batchUris = new LinkedHashMap<>();
+        final Map<Uri, Boolean> outerBatchUris = mBatchUris.get();
+        mBatchUris.set(batchUris);
+        boolean transaction = mClient.beginTransaction();
+        try {
+            final ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+            for (int i = 0; i < results.length; ++i) {
+                results[i] = operations.get(i).apply(this, results, i);
+            }
+            mBatchUris.set(outerBatchUris);
+            for (final Map.Entry<Uri, Boolean> entry : batchUris.entrySet()) {
+                notifyChange(entry.getKey(), entry.getValue());
+            }
+            if (transaction) {
+                mClient.endTransaction();
+                transaction = false;
+            }
+            return results;
+        } finally {
+            mBatchUris.set(outerBatchUris);
+            if (transaction) {
+                mClient.rollbackTransaction();
+            }
+        }
+    }
+
     @Override
     @SuppressWarnings("squid:S1226")
     public int delete(@NonNull Uri uri, @Nullable String where, @Nullable String[] bindArgs) {
@@ -163,9 +324,9 @@ public class SQLiteProvider extends ContentProvider {
         } else {
             affectedRows = mClient.executeUpdateDelete(sql.toString(), (Object[]) bindArgs);
         }
-        if (affectedRows > 0 && shouldNotifyChange(uri)) {
-            Objects.requireNonNull(getContext(), CONTEXT_IS_NULL).getContentResolver()
-                    .notifyChange(uri, null, shouldSyncToNetwork(uri));
+        if (affectedRows > 0) {
+            evict(uri, table);
+            notifyChange(uri);
         }
         return affectedRows;
     }
@@ -182,33 +343,18 @@ public class SQLiteProvider extends ContentProvider {
         if (values == null) {
             values = new ContentValues();
         }
-        final StringBuilder sql = new StringBuilder()
-                .append("UPDATE ")
-                .append(table)
-                .append(" SET ");
-        sql.append(TextUtils.join(", ", Sets.transform(values.keySet(), new Func1<String, String>() {
-            @Override
-            public String call(String column) {
-                return column + " = ?";
-            }
-        })));
+        final Template template = templateOf(table, values.keySet());
+        if (template.mUpdateSql == null) {
+            throw new SQLiteException("No values to update %s", uri);
+        }
+        String sql = template.mUpdateSql;
         if (where != null) {
-            sql.append(" WHERE ").append(where).append(";");
+            sql = sql + " WHERE " + where + ";";
         }
-        final Set<Object> bindValues = Sets.transform(values.valueSet(),
-                new Func1<Map.Entry<String, Object>, Object>() {
-                    @Override
-                    public Object call(Map.Entry<String, Object> entry) {
-                        return entry.getValue();
-                    }
-                });
-        if (bindArgs != null) {
-            Collections.addAll(bindValues, bindArgs);
-        }
-        final int affectedRows = mClient.executeUpdateDelete(sql.toString(), Sets.toArray(bindValues, Object.class));
-        if (affectedRows > 0 && shouldNotifyChange(uri)) {
-            Objects.requireNonNull(getContext(), CONTEXT_IS_NULL).getContentResolver()
-                    .notifyChange(uri, null, shouldSyncToNetwork(uri));
+        final int affectedRows = mClient.executeUpdateDelete(sql, template.bind(values, bindArgs));
+        if (affectedRows > 0) {
+            evict(uri, table);
+            notifyChange(uri);
         }
         return affectedRows;
     }
@@ -225,6 +371,34 @@ public class SQLiteProvider extends ContentProvider {
         return false;
     }
 
+    /**
+     * Drops instances of the changed rows cached by {@link SQLite#enableIdentityMap(Class, int)}.
+     */
+    private void evict(@NonNull Uri uri, @NonNull String table) {
+        if (URI_MATCH_ID == matchUri(uri)) {
+            SQLiteSchema.evictRow(table, ContentUris.parseId(uri));
+        } else {
+            SQLiteSchema.evictTable(table);
+        }
+    }
+
+    private void notifyChange(@NonNull Uri uri) {
+        if (shouldNotifyChange(uri)) {
+            notifyChange(uri, shouldSyncToNetwork(uri));
+        }
+    }
+
+    private void notifyChange(@NonNull Uri uri, boolean syncToNetwork) {
+        final Map<Uri, Boolean> batchUris = mBatchUris.get();
+        if (batchUris == null) {
+            SQLiteNotifier.notifyChange(uri, syncToNetwork);
+        } else {
+            final Uri tableUri = SQLiteSchema.baseUri(uri, SQLiteSchema.tableOf(uri));
+            final Boolean sync = batchUris.get(tableUri);
+            batchUris.put(tableUri, syncToNetwork || (sync != null && sync));
+        }
+    }
+
     private void createClientIfNecessary() {
         if (mClient == null) {
             mClient = createClient();
@@ -232,4 +406,89 @@ public class SQLiteProvider extends ContentProvider {
         }
     }
 
+    @NonNull
+    private Template templateOf(@NonNull String table, @NonNull Set<String> columns) {
+        final TemplateKey key = new TemplateKey(table, columns);
+        synchronized (mTemplates) {
+            Template template = mTemplates.get(key);
+            if (template == null) {
+                template = new Template(table, columns);
+                mTemplates.put(new TemplateKey(table, new HashSet<>(columns)), template);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * Table and set of columns, independent of {@link ContentValues} iteration order.
+     */
+    private static final class TemplateKey {
+
+        final String mTable;
+
+        final Set<String> mColumns;
+
+        TemplateKey(@NonNull String table, @NonNull Set<String> columns) {
+            mTable = table;
+            mColumns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final TemplateKey that = (TemplateKey) o;
+            return mTable.equals(that.mTable) && mColumns.equals(that.mColumns);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mTable.hashCode() + mColumns.hashCode();
+        }
+
+    }
+
+    /**
+     * INSERT and UPDATE of sorted columns, values are bound in the same order.
+     */
+    private static final class Template {
+
+        final String[] mColumns;
+
+        final String mInsertSql;
+
+        final String mUpdateSql;
+
+        Template(@NonNull String table, @NonNull Set<String> columns) {
+            mColumns = columns.toArray(new String[columns.size()]);
+            Arrays.sort(mColumns);
+            if (mColumns.length == 0) {
+                mInsertSql = "INSERT INTO " + table + " DEFAULT VALUES;";
+                mUpdateSql = null;
+            } else {
+                mInsertSql = "INSERT INTO " + table + "(" + TextUtils.join(", ", mColumns) + ")" +
+                        " VALUES(" + TextUtils.join(", ", Collections.nCopies(mColumns.length, "?")) + ");";
+                mUpdateSql = "UPDATE " + table + " SET " + TextUtils.join(" = ?, ", mColumns) + " = ?";
+            }
+        }
+
+        @NonNull
+        SQLiteArgs bind(@NonNull ContentValues values, @Nullable String[] whereArgs) {
+            final int whereSize = whereArgs == null ? 0 : whereArgs.length;
+            final SQLiteArgs args = new SQLiteArgs(mColumns.length + whereSize);
+            for (int i = 0; i < mColumns.length; ++i) {
+                SQLiteClient.bindValue(args, i + 1, values.get(mColumns[i]));
+            }
+            for (int i = 0; i < whereSize; ++i) {
+                args.bindString(mColumns.length + i + 1, whereArgs[i]);
+            }
+            return args;
+        }
+
+    }
+
 }
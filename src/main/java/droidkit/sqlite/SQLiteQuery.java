@@ -3,27 +3,44 @@ package droidkit.sqlite;
 import android.content.Loader;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import droidkit.concurrent.AsyncQueue;
 import droidkit.content.StringValue;
 import droidkit.io.IOUtils;
 import droidkit.util.Lists;
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
 import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 /**
  * @author Daniel Serdyukov
  */
 public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
 
+    private static final long DEFAULT_OBSERVE_DEBOUNCE_MS = 50;
+
     private final Class<T> mType;
 
     private final StringBuilder mWhere = new StringBuilder();
@@ -34,16 +51,33 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
 
     private final List<String> mOrderBy = new ArrayList<>();
 
+    private final Map<String, Object> mValues = new LinkedHashMap<>();
+
+    private String[] mColumns;
+
     private boolean mDistinct;
 
     private String mHaving;
 
     private String mLimit;
 
+    private boolean mCached;
+
     SQLiteQuery(@NonNull Class<T> type) {
         mType = type;
     }
 
+    /**
+     * Reads only the given columns, use with {@link #list(RowMapper)} or {@link #listAs(Class)} as the
+     * entity mapper may expect all of the columns. {@link #loader()} and {@link #observe()} also read
+     * {@link BaseColumns#_ID}.
+     */
+    @NonNull
+    public SQLiteQuery<T> select(@NonNull String... columns) {
+        mColumns = columns;
+        return this;
+    }
+
     //region conditions
     @NonNull
     public SQLiteQuery<T> distinct() {
@@ -129,6 +163,13 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
 
     @Nullable
     public T withId(long id) {
+        final SQLiteIdentityMap<T> identityMap = SQLiteSchema.identityMapOf(mType);
+        if (identityMap != null && mWhere.length() == 0) {
+            final T cached = identityMap.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
         return equalTo(BaseColumns._ID, id).one();
     }
 
@@ -189,6 +230,34 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
         return this;
     }
 
+    /**
+     * Keeps only rows that follow the given sort key in the current {@link #orderBy(String, boolean)} order,
+     * one value per order column.
+     *
+     * @see SQLitePager
+     */
+    @NonNull
+    public SQLiteQuery<T> seekAfter(@NonNull Object... values) {
+        if (values.length == 0 || values.length != mOrderBy.size()) {
+            throw new IllegalArgumentException("Expected " + mOrderBy.size() + " sort key values, got "
+                    + values.length);
+        }
+        final String[] columns = new String[values.length];
+        final boolean[] descending = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            final String term = mOrderBy.get(i);
+            descending[i] = term.endsWith(DESC);
+            columns[i] = term.substring(0, term.length() - (descending[i] ? DESC : ASC).length());
+        }
+        if (!TextUtils.isEmpty(mWhere)) {
+            mWhere.insert(0, LEFT_PARENTHESIS).append(RIGHT_PARENTHESIS).append(AND);
+        }
+        mWhere.append(LEFT_PARENTHESIS).append(SQLitePager.seekPredicate(columns, descending))
+                .append(RIGHT_PARENTHESIS);
+        mBindArgs.addAll(SQLitePager.seekArgs(values));
+        return this;
+    }
+
     @NonNull
     public SQLiteQuery<T> limit(int limit) {
         mLimit = String.valueOf(limit);
@@ -213,6 +282,10 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
 
     @NonNull
     public List<T> list() {
+        final SQLiteQueryCache cache = mCached ? SQLiteQueryCache.current() : null;
+        if (cache != null) {
+            return cachedList(cache);
+        }
         final Cursor cursor = cursor();
         try {
             return SQLiteList.unpack(cursor, mType);
@@ -221,23 +294,131 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
         }
     }
 
+    /**
+     * Serve {@link #list()} from the query cache while the table is not changed, no-op unless the cache
+     * is enabled with {@link SQLite#enableQueryCache(int)}. Only the table of the query is tracked, so
+     * sub-selects of other tables should not be cached.
+     */
+    @NonNull
+    public SQLiteQuery<T> cached() {
+        mCached = true;
+        return this;
+    }
+
+    /**
+     * @see CompiledQuery#ARG
+     */
+    @NonNull
+    public CompiledQuery<T> compile() {
+        return new CompiledQuery<>(mType, buildSql(), mBindArgs);
+    }
+
+    @NonNull
+    public <R> List<R> list(@NonNull RowMapper<R> mapper) {
+        final Cursor cursor = cursor();
+        try {
+            return SQLiteList.unpack(cursor, mapper);
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    /**
+     * Maps every row into an instance of the getter-only interface, see {@link #select(String...)}.
+     */
+    @NonNull
+    public <R> List<R> listAs(@NonNull Class<R> iface) {
+        return list(new ProjectionRowMapper<>(iface));
+    }
+
     @NonNull
     public List<T> lazyList() {
-        return new SQLiteLazyList<>(this, cursor(), mType);
+        return new SQLiteLazyList<>(cursor(), mType);
+    }
+
+    @NonNull
+    public SQLitePager<T> pager(int pageSize) {
+        if (!isRowFilter()) {
+            throw new IllegalStateException("Keyset pagination is not supported with limit, group by or distinct");
+        }
+        return new SQLitePager<>(mType, table(), mWhere.toString(), mBindArgs, mOrderBy, pageSize);
+    }
+
+    @NonNull
+    public List<T> pagedList(int pageSize) {
+        return pagedList(pageSize, SQLitePagedList.DEFAULT_MAX_PAGES);
+    }
+
+    @NonNull
+    public List<T> pagedList(int pageSize, int maxPages) {
+        return pagedList(pageSize, maxPages, AsyncQueue.get());
+    }
+
+    @NonNull
+    public List<T> pagedList(int pageSize, int maxPages, @NonNull ExecutorService prefetchExecutor) {
+        if (mLimit != null) {
+            throw new IllegalStateException("Paged list is not supported with limit");
+        }
+        return new SQLitePagedList<>(buildSql(), Lists.toArray(mBindArgs, Object.class), mType,
+                pageSize, maxPages, prefetchExecutor);
+    }
+
+    @NonNull
+    public SQLiteIterator<T> iterate() {
+        return iterate(SQLiteSchema.rowMapperOf(mType));
+    }
+
+    /**
+     * Rows are not retained by the iterator, so the mapper may refill and return the same holder object.
+     */
+    @NonNull
+    public <R> SQLiteIterator<R> iterate(@NonNull RowMapper<R> mapper) {
+        return new SQLiteIterator<>(cursor(), mapper);
+    }
+
+    public void forEach(@NonNull Action1<? super T> action) {
+        final SQLiteIterator<T> iterator = iterate();
+        try {
+            while (iterator.hasNext()) {
+                action.call(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Emits rows one by one as they are requested, the cursor is closed on completion or unsubscribe.
+     */
+    @NonNull
+    public Observable<T> stream() {
+        return Observable.using(new Func0<SQLiteIterator<T>>() {
+            @Override
+            public SQLiteIterator<T> call() {
+                return iterate();
+            }
+        }, new Func1<SQLiteIterator<T>, Observable<T>>() {
+            @Override
+            public Observable<T> call(final SQLiteIterator<T> iterator) {
+                return Observable.from(new Iterable<T>() {
+                    @Override
+                    public Iterator<T> iterator() {
+                        return iterator;
+                    }
+                });
+            }
+        }, new Action1<SQLiteIterator<T>>() {
+            @Override
+            public void call(SQLiteIterator<T> iterator) {
+                iterator.close();
+            }
+        });
     }
 
     @NonNull
     @Override
     public Cursor cursor() {
-        final Cursor cursor = SQLite.obtainClient().query(SQLiteQueryBuilder.buildQueryString(
-                mDistinct,
-                SQLiteSchema.resolveTable(mType),
-                null, mWhere.toString(),
-                TextUtils.join(COMMA, mGroupBy),
-                mHaving,
-                TextUtils.join(COMMA, mOrderBy),
-                mLimit
-        ), Lists.toArray(mBindArgs, Object.class));
+        final Cursor cursor = SQLite.obtainClient().query(buildSql(), Lists.toArray(mBindArgs, Object.class));
         cursor.setNotificationUri(SQLite.obtainResolver(), SQLiteSchema.resolveUri(mType));
         return cursor;
     }
@@ -247,23 +428,77 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
         if (!TextUtils.isEmpty(mWhere)) {
             sql.append(WHERE).append(mWhere);
         }
-        return SQLite.obtainClient().executeUpdateDelete(sql.toString(), Lists.toArray(mBindArgs, Object.class));
+        final int affectedRows = SQLite.obtainClient().executeUpdateDelete(sql.toString(),
+                Lists.toArray(mBindArgs, Object.class));
+        if (affectedRows > 0) {
+            SQLiteSchema.evictAll(mType);
+            SQLiteSchema.notifyChange(mType);
+        }
+        return affectedRows;
+    }
+
+    @NonNull
+    public SQLiteQuery<T> set(@NonNull String column, @Nullable Object value) {
+        mValues.put(column, value);
+        return this;
+    }
+
+    /**
+     * Applies the {@link #set(String, Object)} values to all matching rows with a single UPDATE statement.
+     *
+     * @return number of updated rows
+     */
+    public int update() {
+        if (mValues.isEmpty()) {
+            throw new IllegalStateException("Nothing to update, call set(column, value) first");
+        }
+        final StringBuilder sql = new StringBuilder("UPDATE ").append(SQLiteSchema.resolveTable(mType))
+                .append(" SET ");
+        final List<Object> bindArgs = new ArrayList<>(mValues.size() + mBindArgs.size());
+        for (final Map.Entry<String, Object> entry : mValues.entrySet()) {
+            if (!bindArgs.isEmpty()) {
+                sql.append(COMMA);
+            }
+            sql.append(entry.getKey()).append(EQ);
+            bindArgs.add(entry.getValue());
+        }
+        if (!TextUtils.isEmpty(mWhere)) {
+            sql.append(WHERE).append(mWhere);
+        }
+        bindArgs.addAll(mBindArgs);
+        final int affectedRows = SQLite.obtainClient().executeUpdateDelete(sql.toString(),
+                Lists.toArray(bindArgs, Object.class));
+        if (affectedRows > 0) {
+            SQLiteSchema.evictAll(mType);
+            SQLiteSchema.notifyChange(mType);
+        }
+        return affectedRows;
     }
 
     //region Functions
+
+    /**
+     * @return value as {@link Double}, 0.0 if there are no rows, use {@link #aggregate()} for exact INTEGER values
+     */
     @NonNull
     public Number min(@NonNull String column) {
-        return applyFunc("MIN", column);
+        return aggregate().min(column).execute().getDouble(0);
     }
 
+    /**
+     * @see #min(String)
+     */
     @NonNull
     public Number max(@NonNull String column) {
-        return applyFunc("MAX", column);
+        return aggregate().max(column).execute().getDouble(0);
     }
 
+    /**
+     * @see #min(String)
+     */
     @NonNull
     public Number sum(@NonNull String column) {
-        return applyFunc("SUM", column);
+        return aggregate().sum(column).execute().getDouble(0);
     }
 
     @NonNull
@@ -271,9 +506,17 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
         return count(BaseColumns._ID);
     }
 
+    /**
+     * @return value as {@link Double}
+     */
     @NonNull
     public Number count(@NonNull String column) {
-        return applyFunc("COUNT", column);
+        return (double) aggregate().count(column).executeForLong();
+    }
+
+    @NonNull
+    public SQLiteAggregate aggregate() {
+        return new SQLiteAggregate(table(), mWhere.toString(), mBindArgs);
     }
     //endregion
 
@@ -292,36 +535,187 @@ public class SQLiteQuery<T> implements SQLiteRawQuery, SQLiteOp {
         });
     }
 
+    /**
+     * Emits the query result now and after every change of the table, reruns are debounced and skipped
+     * if no row of the table was changed since the previous run.
+     */
+    @NonNull
+    public Observable<List<T>> observe() {
+        return observe(Schedulers.io());
+    }
+
+    @NonNull
+    public Observable<List<T>> observe(@NonNull Scheduler scheduler) {
+        return observe(scheduler, DEFAULT_OBSERVE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @NonNull
+    public Observable<List<T>> observe(@NonNull final Scheduler scheduler, final long debounce,
+                                       @NonNull final TimeUnit unit) {
+        return Observable.defer(new Func0<Observable<List<T>>>() {
+            @Override
+            public Observable<List<T>> call() {
+                final Uri uri = SQLiteSchema.resolveUri(mType);
+                final AtomicReference<SQLiteSnapshot<T>> current = new AtomicReference<>();
+                final AtomicBoolean unsubscribed = new AtomicBoolean();
+                Observable<Uri> changes = Observable.create(new SQLiteChangeOnSubscribe(uri));
+                if (debounce > 0) {
+                    changes = changes.debounce(debounce, unit, scheduler);
+                }
+                return changes.startWith(uri)
+                        .onBackpressureLatest()
+                        .observeOn(scheduler)
+                        .map(new Func1<Uri, SQLiteSnapshot<T>>() {
+                            @Override
+                            public SQLiteSnapshot<T> call(Uri uri) {
+                                final SQLiteSnapshot<T> snapshot = current.get();
+                                final SQLiteSnapshot<T> updated;
+                                if (snapshot == null) {
+                                    updated = SQLiteSnapshot.load(SQLiteQuery.this, mType);
+                                } else {
+                                    updated = snapshot.update(SQLiteQuery.this, mType);
+                                }
+                                current.set(updated);
+                                if (unsubscribed.get()) {
+                                    updated.release();
+                                }
+                                return updated;
+                            }
+                        })
+                        .doOnUnsubscribe(new Action0() {
+                            @Override
+                            public void call() {
+                                unsubscribed.set(true);
+                                final SQLiteSnapshot<T> snapshot = current.get();
+                                if (snapshot != null) {
+                                    snapshot.release();
+                                }
+                            }
+                        })
+                        .distinctUntilChanged()
+                        .map(new Func1<SQLiteSnapshot<T>, List<T>>() {
+                            @Override
+                            public List<T> call(SQLiteSnapshot<T> snapshot) {
+                                return snapshot.list();
+                            }
+                        })
+                        .onBackpressureLatest();
+            }
+        });
+    }
+
     @Override
     public String toString() {
         return WHERE + mWhere.toString();
     }
 
     @NonNull
-    private SQLiteQuery<T> appendWhere(@NonNull String column, @NonNull String op, @NonNull Object... values) {
-        mWhere.append(column).append(op);
-        Collections.addAll(mBindArgs, values);
-        return this;
+    String buildSql() {
+        return buildSql(mColumns);
     }
 
     @NonNull
-    private Number applyFunc(@NonNull String func, @NonNull String column) {
-        final StringBuilder sql = new StringBuilder("SELECT ").append(func)
-                .append(LEFT_PARENTHESIS).append(column).append(RIGHT_PARENTHESIS)
-                .append(" FROM ")
-                .append(SQLiteSchema.resolveTable(mType));
-        if (!TextUtils.isEmpty(mWhere)) {
-            sql.append(WHERE).append(mWhere);
-        }
-        final Cursor cursor = SQLite.obtainClient().query(sql.toString(), Lists.toArray(mBindArgs, Object.class));
-        try {
-            if (cursor.moveToFirst()) {
-                return cursor.getDouble(0);
+    String buildSql(@Nullable String[] columns) {
+        return SQLiteQueryBuilder.buildQueryString(
+                mDistinct,
+                SQLiteSchema.resolveTable(mType),
+                columns, mWhere.toString(),
+                TextUtils.join(COMMA, mGroupBy),
+                mHaving,
+                TextUtils.join(COMMA, mOrderBy),
+                mLimit
+        );
+    }
+
+    @NonNull
+    String table() {
+        return SQLiteSchema.resolveTable(mType);
+    }
+
+    @NonNull
+    private List<T> cachedList(@NonNull SQLiteQueryCache cache) {
+        final String table = table();
+        final String key = SQLiteQueryCache.keyOf(mType, buildSql(), Lists.toArray(mBindArgs, Object.class));
+        List<T> rows = cache.get(table, key);
+        if (rows == null) {
+            final long version = cache.version(table);
+            final Cursor cursor = cursor();
+            try {
+                rows = SQLiteList.unpack(cursor, mType);
+            } finally {
+                IOUtils.closeQuietly(cursor);
             }
-        } finally {
-            IOUtils.closeQuietly(cursor);
+            cache.put(table, key, version, rows);
+        }
+        return SQLiteList.wrap(new ArrayList<>(rows));
+    }
+
+    boolean isOrdered() {
+        return !mOrderBy.isEmpty();
+    }
+
+    /**
+     * @return false if the result set is not a plain filter of the table rows, so a single row change can
+     * add or remove other rows (limit, grouping, distinct)
+     */
+    boolean isRowFilter() {
+        return !mDistinct && mLimit == null && mHaving == null && mGroupBy.isEmpty();
+    }
+
+    /**
+     * @return how many ids {@link #cursorForIds(Collection)} can bind next to the own arguments of the query
+     */
+    int maxIdArgs() {
+        return SQLiteBulkInsert.MAX_BIND_ARGS - mBindArgs.size();
+    }
+
+    /**
+     * Snapshots of {@link #loader()} and {@link #observe()} key rows by {@link BaseColumns#_ID}, so it is added
+     * to the {@link #select(String...)} projection.
+     */
+    @NonNull
+    Cursor snapshotCursor() {
+        return SQLite.obtainClient().query(buildSql(snapshotColumns()), Lists.toArray(mBindArgs, Object.class));
+    }
+
+    @Nullable
+    String[] snapshotColumns() {
+        if (mColumns == null || Arrays.asList(mColumns).contains(BaseColumns._ID)) {
+            return mColumns;
+        }
+        if (mDistinct) {
+            throw new IllegalStateException("Distinct select() without " + BaseColumns._ID +
+                    " can't be observed, rows of the result are not table rows");
+        }
+        final String[] columns = Arrays.copyOf(mColumns, mColumns.length + 1);
+        columns[mColumns.length] = BaseColumns._ID;
+        return columns;
+    }
+
+    @NonNull
+    Cursor cursorForIds(@NonNull Collection<Long> ids) {
+        if (ids.size() > maxIdArgs()) {
+            throw new IllegalArgumentException("Too many ids: " + ids.size() + ", max " + maxIdArgs());
+        }
+        final StringBuilder where = new StringBuilder();
+        if (!TextUtils.isEmpty(mWhere)) {
+            where.append(LEFT_PARENTHESIS).append(mWhere).append(RIGHT_PARENTHESIS).append(AND);
         }
-        return Double.NaN;
+        where.append(BaseColumns._ID).append(" IN(")
+                .append(TextUtils.join(COMMA, Collections.nCopies(ids.size(), "?")))
+                .append(RIGHT_PARENTHESIS);
+        final List<Object> bindArgs = new ArrayList<>(mBindArgs.size() + ids.size());
+        bindArgs.addAll(mBindArgs);
+        bindArgs.addAll(ids);
+        return SQLite.obtainClient().query(SQLiteQueryBuilder.buildQueryString(false, table(), snapshotColumns(),
+                where.toString(), null, null, null, null), Lists.toArray(bindArgs, Object.class));
+    }
+
+    @NonNull
+    private SQLiteQuery<T> appendWhere(@NonNull String column, @NonNull String op, @NonNull Object... values) {
+        mWhere.append(column).append(op);
+        Collections.addAll(mBindArgs, values);
+        return this;
     }
 
 }
@@ -0,0 +1,184 @@
+package droidkit.sqlite;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of {@link SQLiteQuery#cached()} results, budgeted in rows. Every entry remembers the version of its
+ * table, versions are bumped by table change notifications, so an entry is dropped on the first read after
+ * its table was changed.
+ *
+ * @author Daniel Serdyukov
+ */
+public final class SQLiteQueryCache {
+
+    private static volatile SQLiteQueryCache sInstance;
+
+    private final ConcurrentMap<String, AtomicLong> mVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong mEpoch = new AtomicLong();
+
+    private final AtomicLong mHits = new AtomicLong();
+
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private final LruCache<String, Entry> mEntries;
+
+    SQLiteQueryCache(int maxRows) {
+        mEntries = new LruCache<String, Entry>(maxRows) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return Math.max(1, entry.mRows.size());
+            }
+        };
+    }
+
+    @NonNull
+    static SQLiteQueryCache enable(int maxRows) {
+        final SQLiteQueryCache cache = new SQLiteQueryCache(maxRows);
+        sInstance = cache;
+        return cache;
+    }
+
+    static void disable() {
+        sInstance = null;
+    }
+
+    @Nullable
+    static SQLiteQueryCache current() {
+        return sInstance;
+    }
+
+    static void invalidate(@NonNull Uri uri) {
+        final SQLiteQueryCache cache = sInstance;
+        final List<String> segments = uri.getPathSegments();
+        if (cache != null && !segments.isEmpty()) {
+            cache.invalidate(segments.get(0));
+        }
+    }
+
+    static void invalidate(@NonNull Class<?> type) {
+        final SQLiteQueryCache cache = sInstance;
+        if (cache != null) {
+            cache.invalidate(SQLiteSchema.resolveTable(type));
+        }
+    }
+
+    /**
+     * Drops results of all tables, for writes that don't say which tables they change.
+     */
+    static void invalidateAll() {
+        final SQLiteQueryCache cache = sInstance;
+        if (cache != null) {
+            cache.mEpoch.incrementAndGet();
+            cache.clear();
+        }
+    }
+
+    @NonNull
+    static String keyOf(@NonNull Class<?> type, @NonNull String sql, @NonNull Object[] bindArgs) {
+        return type.getName() + "|" + sql + "|" + Arrays.deepToString(bindArgs);
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public int getEvictionCount() {
+        return mEntries.evictionCount();
+    }
+
+    /**
+     * @return number of cached rows
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    public int maxSize() {
+        return mEntries.maxSize();
+    }
+
+    public void clear() {
+        mEntries.evictAll();
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteQueryCache[size=" + size() + ", maxSize=" + maxSize() + ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    long version(@NonNull String table) {
+        return mEpoch.get() + versionOf(table).get();
+    }
+
+    void invalidate(@NonNull String table) {
+        versionOf(table).incrementAndGet();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(@NonNull String table, @NonNull String key) {
+        final Entry entry = mEntries.get(key);
+        if (entry != null && entry.mVersion == version(table)) {
+            mHits.incrementAndGet();
+            return (List<T>) entry.mRows;
+        }
+        if (entry != null) {
+            mEntries.remove(key);
+        }
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @param version version of the table taken before the query, stale results are not cached
+     */
+    void put(@NonNull String table, @NonNull String key, long version, @NonNull List<?> rows) {
+        if (version == version(table)) {
+            mEntries.put(key, new Entry(version, Collections.unmodifiableList(new ArrayList<>(rows))));
+        }
+    }
+
+    @NonNull
+    private AtomicLong versionOf(@NonNull String table) {
+        AtomicLong version = mVersions.get(table);
+        if (version == null) {
+            final AtomicLong newVersion = new AtomicLong();
+            version = mVersions.putIfAbsent(table, newVersion);
+            if (version == null) {
+                version = newVersion;
+            }
+        }
+        return version;
+    }
+
+    private static final class Entry {
+
+        final long mVersion;
+
+        final List<?> mRows;
+
+        Entry(long version, @NonNull List<?> rows) {
+            mVersion = version;
+            mRows = rows;
+        }
+
+    }
+
+}
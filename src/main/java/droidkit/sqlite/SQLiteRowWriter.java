@@ -0,0 +1,28 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Binds a flat (relation-free) object as one row of its table, so that bulk writes can be packed
+ * into multi-row statements instead of going through the reflective helper for every object.
+ *
+ * @author Daniel Serdyukov
+ */
+public interface SQLiteRowWriter<T> {
+
+    /**
+     * @return table columns without {@link android.provider.BaseColumns#_ID}
+     */
+    @NonNull
+    String[] getColumns();
+
+    long getId(@NonNull T object);
+
+    void setId(@NonNull T object, long id);
+
+    /**
+     * Bind values of {@link #getColumns()} starting from {@code offset + 1}.
+     */
+    void bindRow(@NonNull SQLiteBindable stmt, int offset, @NonNull T object);
+
+}
@@ -4,6 +4,7 @@ import android.content.pm.ProviderInfo;
 import android.net.Uri;
 import android.support.annotation.Keep;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import java.util.List;
@@ -11,7 +12,6 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
 import droidkit.dynamic.DynamicException;
@@ -34,8 +34,13 @@ public abstract class SQLiteSchema {
 
     private static final ConcurrentMap<Class<?>, Class<?>> HELPERS = new ConcurrentHashMap<>();
 
-    private static final List<Class<?>> MUTES = new CopyOnWriteArrayList<>();
+    private static final ConcurrentMap<Class<?>, RowMapper<?>> ROW_MAPPERS = new ConcurrentHashMap<>();
 
+    private static final ConcurrentMap<Class<?>, SQLiteRowWriter<?>> ROW_WRITERS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Class<?>, SQLiteOps<?>> OPS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Class<?>, SQLiteIdentityMap<?>> IDENTITY_MAPS = new ConcurrentHashMap<>();
 
     private SQLiteSchema() {
     }
@@ -67,8 +72,8 @@ public abstract class SQLiteSchema {
     }
 
     public static void notifyChange(@NonNull Class<?> type) {
-        if (!MUTES.contains(type)) {
-            SQLite.obtainResolver().notifyChange(SQLiteSchema.resolveUri(type), null);
+        if (!SQLiteNotifier.isMuted(type)) {
+            SQLiteNotifier.notifyChange(resolveUri(type), false);
         }
     }
 
@@ -144,11 +149,11 @@ public abstract class SQLiteSchema {
     }
 
     static void mute(@NonNull Class<?> type) {
-        MUTES.add(type);
+        SQLiteNotifier.mute(type);
     }
 
     static void unmute(@NonNull Class<?> type) {
-        MUTES.remove(type);
+        SQLiteNotifier.unmute(type);
     }
 
     static void attachInfo(ProviderInfo info) {
@@ -174,6 +179,29 @@ public abstract class SQLiteSchema {
     static void attachTableInfo(@NonNull Class<?> type, @NonNull String table, @NonNull Class<?> helper) {
         RESOLUTIONS.putIfAbsent(type, table);
         HELPERS.putIfAbsent(type, helper);
+        ROW_MAPPERS.putIfAbsent(type, new HelperRowMapper<>(helper.getName()));
+        OPS.putIfAbsent(type, new HelperOps<>(type, helper));
+    }
+
+    @Keep
+    static <T> void attachTableInfo(@NonNull Class<T> type, @NonNull String table, @NonNull Class<?> helper,
+                                    @NonNull RowMapper<T> mapper) {
+        ROW_MAPPERS.putIfAbsent(type, mapper);
+        attachTableInfo(type, table, helper);
+    }
+
+    @Keep
+    static <T> void attachRowWriter(@NonNull Class<T> type, @NonNull SQLiteRowWriter<T> writer) {
+        ROW_WRITERS.putIfAbsent(type, writer);
+    }
+
+    static <T> void registerRowWriter(@NonNull Class<T> type, @NonNull SQLiteRowWriter<T> writer) {
+        ROW_WRITERS.put(type, writer);
+    }
+
+    @Keep
+    static <T> void attachOps(@NonNull Class<T> type, @NonNull SQLiteOps<T> ops) {
+        OPS.put(type, ops);
     }
 
     @NonNull
@@ -185,4 +213,131 @@ public abstract class SQLiteSchema {
         return helper;
     }
 
+    @NonNull
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> rowMapperOf(@NonNull Class<T> type) {
+        RowMapper<?> mapper = ROW_MAPPERS.get(type);
+        if (mapper == null) {
+            final RowMapper<?> newMapper = new HelperRowMapper<>(type.getName() + "$SQLiteHelper");
+            mapper = ROW_MAPPERS.putIfAbsent(type, newMapper);
+            if (mapper == null) {
+                mapper = newMapper;
+            }
+        }
+        return (RowMapper<T>) mapper;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> SQLiteRowWriter<T> rowWriterOf(@NonNull Class<T> type) {
+        return (SQLiteRowWriter<T>) ROW_WRITERS.get(type);
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    static <T> SQLiteOps<T> opsOf(@NonNull Class<T> type) {
+        SQLiteOps<?> ops = OPS.get(type);
+        if (ops == null) {
+            final SQLiteOps<?> newOps = new HelperOps<>(type, helperOf(type));
+            ops = OPS.putIfAbsent(type, newOps);
+            if (ops == null) {
+                ops = newOps;
+            }
+        }
+        return (SQLiteOps<T>) ops;
+    }
+
+    static void enableIdentityMap(@NonNull Class<?> type, int maxSize) {
+        IDENTITY_MAPS.put(type, new SQLiteIdentityMap<>(maxSize));
+    }
+
+    static void disableIdentityMap(@NonNull Class<?> type) {
+        IDENTITY_MAPS.remove(type);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> SQLiteIdentityMap<T> identityMapOf(@NonNull Class<T> type) {
+        return (SQLiteIdentityMap<T>) IDENTITY_MAPS.get(type);
+    }
+
+    /**
+     * Drops the cached instance of the updated or removed object. Without a row writer its id is not known and
+     * the instance is looked up in the map, if it is not there the object is a copy and all instances of the
+     * type are dropped, one of them may be stale.
+     */
+    static <T> void evict(@NonNull Class<T> type, @NonNull T object) {
+        final SQLiteIdentityMap<T> identityMap = identityMapOf(type);
+        if (identityMap != null) {
+            final SQLiteRowWriter<T> writer = rowWriterOf(type);
+            if (writer != null) {
+                identityMap.remove(writer.getId(object));
+            } else if (!identityMap.removeInstance(object)) {
+                identityMap.clear();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached instance of the saved object. Saved object that is not cached is a new row, so nothing
+     * else is dropped.
+     */
+    static <T> void evictSaved(@NonNull Class<T> type, @NonNull T object) {
+        final SQLiteIdentityMap<T> identityMap = identityMapOf(type);
+        if (identityMap != null) {
+            final SQLiteRowWriter<T> writer = rowWriterOf(type);
+            if (writer != null) {
+                identityMap.remove(writer.getId(object));
+            } else {
+                identityMap.removeInstance(object);
+            }
+        }
+    }
+
+    /**
+     * Drops cached instances of the written objects by id, or all instances of the type if it has no row writer.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void evictAll(@NonNull Class<T> type, @NonNull List<?> objects) {
+        final SQLiteIdentityMap<T> identityMap = identityMapOf(type);
+        if (identityMap != null) {
+            final SQLiteRowWriter<T> writer = rowWriterOf(type);
+            if (writer == null) {
+                identityMap.clear();
+            } else {
+                for (final Object object : objects) {
+                    identityMap.remove(writer.getId((T) object));
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops cached instances of the row for all types mapped to the table, used by writes that know only
+     * the table, like {@link SQLiteProvider}.
+     */
+    static void evictRow(@NonNull String table, long id) {
+        for (final Map.Entry<Class<?>, String> entry : RESOLUTIONS.entrySet()) {
+            final SQLiteIdentityMap<?> identityMap = IDENTITY_MAPS.get(entry.getKey());
+            if (identityMap != null && table.equals(entry.getValue())) {
+                identityMap.remove(id);
+            }
+        }
+    }
+
+    static void evictTable(@NonNull String table) {
+        for (final Map.Entry<Class<?>, String> entry : RESOLUTIONS.entrySet()) {
+            if (table.equals(entry.getValue())) {
+                evictAll(entry.getKey());
+            }
+        }
+    }
+
+    static void evictAll(@NonNull Class<?> type) {
+        final SQLiteIdentityMap<?> identityMap = IDENTITY_MAPS.get(type);
+        if (identityMap != null) {
+            identityMap.clear();
+        }
+    }
+
 }
@@ -0,0 +1,169 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Query result bound to the version of the change log. {@link #update(SQLiteQuery, Class)} re-reads only the rows
+ * changed since that version and falls back to the full query when the delta can't be applied.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteSnapshot<T> {
+
+    static final int MAX_DELTA = 500;
+
+    private final SQLiteChangeTracker mTracker;
+
+    private final String mTable;
+
+    private final List<T> mObjects;
+
+    private final long[] mIds;
+
+    private final long mVersion;
+
+    private final AtomicBoolean mTracked = new AtomicBoolean(true);
+
+    private SQLiteSnapshot(@NonNull SQLiteChangeTracker tracker, @NonNull String table, @NonNull List<T> objects,
+                           @NonNull long[] ids, long version) {
+        mTracker = tracker;
+        mTable = table;
+        mObjects = objects;
+        mIds = ids;
+        mVersion = version;
+    }
+
+    /**
+     * The snapshot tracks changes of the table until {@link #release()}.
+     */
+    @NonNull
+    static <T> SQLiteSnapshot<T> load(@NonNull SQLiteQuery<T> query, @NonNull Class<T> type) {
+        final String table = query.table();
+        final SQLiteChangeTracker tracker = SQLiteChangeTracker.of(SQLite.obtainClient());
+        final long version = tracker.track(table);
+        boolean loaded = false;
+        final Cursor cursor = query.snapshotCursor();
+        try {
+            final List<T> objects = new ArrayList<>(cursor.getCount());
+            final long[] ids = new long[cursor.getCount()];
+            final int idColumn = cursor.getColumnIndexOrThrow(BaseColumns._ID);
+            final RowMapper<T> mapper = SQLiteSchema.rowMapperOf(type);
+            if (cursor.moveToFirst()) {
+                final int[] columns = mapper.resolveColumns(cursor);
+                do {
+                    ids[objects.size()] = cursor.getLong(idColumn);
+                    objects.add(mapper.map(cursor, columns));
+                } while (cursor.moveToNext());
+            }
+            loaded = true;
+            return new SQLiteSnapshot<>(tracker, table, objects, ids, version);
+        } finally {
+            IOUtils.closeQuietly(cursor);
+            if (!loaded) {
+                tracker.untrack(table);
+            }
+        }
+    }
+
+    /**
+     * @return this snapshot if nothing was changed, otherwise the new snapshot which takes over the tracking
+     */
+    @NonNull
+    SQLiteSnapshot<T> update(@NonNull SQLiteQuery<T> query, @NonNull Class<T> type) {
+        final SQLiteChangeSet changes = mTracker.changesSince(mTable, mVersion);
+        if (changes.isEmpty()) {
+            return this;
+        }
+        final boolean modified = !changes.getInserted().isEmpty() || !changes.getUpdated().isEmpty();
+        final Set<Long> changed = new LinkedHashSet<>(changes.getUpdated());
+        changed.addAll(changes.getInserted());
+        if (changes.isOverflow() || changes.size() > MAX_DELTA || changed.size() > query.maxIdArgs()
+                || !query.isRowFilter() || (modified && query.isOrdered())) {
+            final SQLiteSnapshot<T> snapshot = load(query, type);
+            release();
+            return snapshot;
+        }
+        final Map<Long, T> fetched = fetch(query, type, changed);
+        final List<T> objects = new ArrayList<>(mObjects.size() + fetched.size());
+        final long[] ids = new long[mIds.length + fetched.size()];
+        for (int i = 0; i < mIds.length; ++i) {
+            final long id = mIds[i];
+            if (changes.getDeleted().contains(id)) {
+                continue;
+            }
+            if (changed.contains(id)) {
+                final T object = fetched.remove(id);
+                if (object == null) {
+                    continue;
+                }
+                ids[objects.size()] = id;
+                objects.add(object);
+            } else {
+                ids[objects.size()] = id;
+                objects.add(mObjects.get(i));
+            }
+        }
+        for (final Map.Entry<Long, T> entry : fetched.entrySet()) {
+            ids[objects.size()] = entry.getKey();
+            objects.add(entry.getValue());
+        }
+        final long[] trimmed = new long[objects.size()];
+        System.arraycopy(ids, 0, trimmed, 0, trimmed.length);
+        final SQLiteSnapshot<T> snapshot = new SQLiteSnapshot<>(mTracker, mTable, objects, trimmed,
+                changes.getVersion());
+        if (!mTracked.compareAndSet(true, false)) {
+            snapshot.release();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stops tracking of the table, the snapshot can't be updated afterwards.
+     */
+    void release() {
+        if (mTracked.compareAndSet(true, false)) {
+            mTracker.untrack(mTable);
+        }
+    }
+
+    @NonNull
+    List<T> list() {
+        return SQLiteList.wrap(new ArrayList<>(mObjects));
+    }
+
+    @NonNull
+    private static <T> Map<Long, T> fetch(@NonNull SQLiteQuery<T> query, @NonNull Class<T> type,
+                                          @NonNull Set<Long> ids) {
+        final Map<Long, T> objects = new LinkedHashMap<>(ids.size());
+        if (ids.isEmpty()) {
+            return objects;
+        }
+        final Cursor cursor = query.cursorForIds(ids);
+        try {
+            if (cursor.moveToFirst()) {
+                final int idColumn = cursor.getColumnIndexOrThrow(BaseColumns._ID);
+                final RowMapper<T> mapper = SQLiteSchema.rowMapperOf(type);
+                final int[] columns = mapper.resolveColumns(cursor);
+                do {
+                    objects.put(cursor.getLong(idColumn), mapper.map(cursor, columns));
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        return objects;
+    }
+
+}
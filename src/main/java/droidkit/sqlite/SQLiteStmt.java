@@ -5,19 +5,7 @@ import java.io.Closeable;
 /**
  * @author Daniel Serdyukov
  */
-public interface SQLiteStmt extends Closeable {
-
-    void clearBindings();
-
-    void bindNull(int index);
-
-    void bindLong(int index, long value);
-
-    void bindDouble(int index, double value);
-
-    void bindString(int index, String value);
-
-    void bindBlob(int index, byte[] value);
+public interface SQLiteStmt extends SQLiteBindable, Closeable {
 
     void execute();
 
@@ -27,6 +15,8 @@ public interface SQLiteStmt extends Closeable {
 
     String queryForString();
 
+    long queryForLong();
+
     @Override
     void close();
 
@@ -0,0 +1,78 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import droidkit.io.IOUtils;
+
+/**
+ * Bounded LRU of compiled statements. A statement is checked out of the cache while it is bound and executed,
+ * so concurrent callers never share one, and checked back in afterwards.
+ *
+ * @author Daniel Serdyukov
+ */
+public final class SQLiteStmtCache {
+
+    private final LruCache<String, SQLiteStmt> mCache;
+
+    SQLiteStmtCache(int maxSize) {
+        mCache = new LruCache<String, SQLiteStmt>(maxSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, String sql, SQLiteStmt oldStmt, SQLiteStmt newStmt) {
+                if (evicted || newStmt != null) {
+                    IOUtils.closeQuietly(oldStmt);
+                }
+            }
+        };
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    public int hitCount() {
+        return mCache.hitCount();
+    }
+
+    public int missCount() {
+        return mCache.missCount();
+    }
+
+    public int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return mCache.toString();
+    }
+
+    @NonNull
+    SQLiteStmt acquire(@NonNull SQLiteDb db, @NonNull String sql) {
+        SQLiteStmt stmt;
+        synchronized (mCache) {
+            stmt = mCache.get(sql);
+            if (stmt != null) {
+                mCache.remove(sql);
+            }
+        }
+        if (stmt == null) {
+            stmt = db.compileStatement(sql);
+        }
+        return stmt;
+    }
+
+    void release(@NonNull String sql, @NonNull SQLiteStmt stmt) {
+        stmt.clearBindings();
+        mCache.put(sql, stmt);
+    }
+
+    void clear() {
+        mCache.evictAll();
+    }
+
+}
@@ -0,0 +1,108 @@
+package droidkit.sqlite;
+
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Insert-or-update of flat objects by {@link BaseColumns#_ID} or by any other unique column.
+ * Existing rows are updated in place instead of {@code INSERT OR REPLACE}, which deletes the old row first
+ * and so fires {@code ON DELETE} cascades of relation tables.
+ * Not thread-safe, intended to be used inside one transaction.
+ *
+ * @author Daniel Serdyukov
+ */
+final class SQLiteUpsert<T> {
+
+    private final SQLiteClient mClient;
+
+    private final SQLiteRowWriter<T> mWriter;
+
+    private final int mIdIndex;
+
+    private final int mKeyIndex;
+
+    private final String mUpdateSql;
+
+    private final String mInsertSql;
+
+    private final String mSelectIdSql;
+
+    private final SQLiteArgs mArgs = new SQLiteArgs();
+
+    private final SQLiteArgs mKey = new SQLiteArgs(1);
+
+    SQLiteUpsert(@NonNull SQLiteClient client, @NonNull String table, @NonNull SQLiteRowWriter<T> writer,
+                 @NonNull String conflictColumn) {
+        mClient = client;
+        mWriter = writer;
+        final String[] columns = writer.getColumns();
+        mIdIndex = columns.length + 1;
+        if (BaseColumns._ID.equals(conflictColumn)) {
+            mKeyIndex = mIdIndex;
+        } else {
+            mKeyIndex = Arrays.asList(columns).indexOf(conflictColumn) + 1;
+            if (mKeyIndex == 0) {
+                throw new IllegalArgumentException("No such column " + conflictColumn + " in " + table);
+            }
+        }
+        mUpdateSql = buildUpdateSql(table, columns);
+        mInsertSql = buildInsertSql(table, columns);
+        mSelectIdSql = "SELECT COALESCE(MAX(" + BaseColumns._ID + "), 0) FROM " + table +
+                SQLiteOp.WHERE + conflictColumn + " = ?;";
+    }
+
+    @NonNull
+    static String buildUpdateSql(@NonNull String table, @NonNull String[] columns) {
+        final StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.length; ++i) {
+            if (i > 0) {
+                sql.append(SQLiteOp.COMMA);
+            }
+            sql.append(columns[i]).append(" = ?");
+        }
+        return sql.append(SQLiteOp.WHERE).append(BaseColumns._ID).append(" = ?;").toString();
+    }
+
+    @NonNull
+    static String buildInsertSql(@NonNull String table, @NonNull String[] columns) {
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(SQLiteOp.LEFT_PARENTHESIS);
+        final StringBuilder values = new StringBuilder();
+        for (final String column : columns) {
+            sql.append(column).append(SQLiteOp.COMMA);
+            values.append("?").append(SQLiteOp.COMMA);
+        }
+        return sql.append(BaseColumns._ID).append(SQLiteOp.RIGHT_PARENTHESIS)
+                .append(" VALUES").append(SQLiteOp.LEFT_PARENTHESIS).append(values).append("?")
+                .append(SQLiteOp.RIGHT_PARENTHESIS).append(";").toString();
+    }
+
+    /**
+     * @return true if the row was inserted, false if an existing one was updated
+     */
+    boolean upsert(@NonNull T object) {
+        mArgs.clearBindings();
+        mWriter.bindRow(mArgs, 0, object);
+        final long id;
+        if (mKeyIndex == mIdIndex) {
+            id = mWriter.getId(object);
+        } else {
+            mKey.clearBindings();
+            mArgs.bindAt(mKey, mKeyIndex, 1);
+            id = mClient.queryForLong(mSelectIdSql, mKey);
+        }
+        if (id > 0) {
+            mArgs.bindLong(mIdIndex, id);
+            if (mClient.executeUpdateDelete(mUpdateSql, mArgs) > 0) {
+                mWriter.setId(object, id);
+                return false;
+            }
+        } else {
+            mArgs.bindNull(mIdIndex);
+        }
+        mWriter.setId(object, mClient.executeInsert(mInsertSql, mArgs));
+        return true;
+    }
+
+}
@@ -0,0 +1,297 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import droidkit.concurrent.NamedThreadFactory;
+
+/**
+ * Write-behind queue: writes are executed on a single writer thread and committed in groups, one transaction
+ * per batch of up to {@link #setBatchSize(int)} writes or per {@link #setBatchDelay(long, TimeUnit)} window,
+ * whichever comes first. Futures are completed after the batch is committed. A failing write does not fail
+ * the others: the batch is rolled back and its writes are retried one transaction each.
+ *
+ * @author Daniel Serdyukov
+ */
+public final class SQLiteWriteQueue {
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    static final long DEFAULT_BATCH_DELAY_MS = 10;
+
+    private static final long KEEP_ALIVE_SEC = 5;
+
+    private final BlockingQueue<Write<?>> mQueue = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private volatile int mBatchSize = DEFAULT_BATCH_SIZE;
+
+    private volatile long mBatchDelayMs = DEFAULT_BATCH_DELAY_MS;
+
+    private volatile Durability mDurability = Durability.DEFAULT;
+
+    private volatile Thread mWriterThread;
+
+    SQLiteWriteQueue() {
+        mExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SQLiteWriter #"));
+        mExecutor.setKeepAliveTime(KEEP_ALIVE_SEC, TimeUnit.SECONDS);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @NonNull
+    public SQLiteWriteQueue setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be >= 1, got " + batchSize);
+        }
+        mBatchSize = batchSize;
+        return this;
+    }
+
+    @NonNull
+    public SQLiteWriteQueue setBatchDelay(long delay, @NonNull TimeUnit unit) {
+        mBatchDelayMs = Math.max(0, unit.toMillis(delay));
+        return this;
+    }
+
+    /**
+     * Sync mode of the writer connection while a batch is committed, see {@code PRAGMA synchronous}.
+     * <p>
+     * The setting is connection-wide: all threads share the writer connection, so writes that other threads
+     * commit while a batch is in flight run with the same level. Use a level weaker than the connection
+     * default only if every write of the application can tolerate it.
+     */
+    @NonNull
+    public SQLiteWriteQueue setDurability(@NonNull Durability durability) {
+        mDurability = durability;
+        return this;
+    }
+
+    @NonNull
+    public <T> Future<T> save(@NonNull final T object) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return SQLite.save(object);
+            }
+        });
+    }
+
+    @NonNull
+    public <T> Future<T> update(@NonNull final T object) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return SQLite.update(object);
+            }
+        });
+    }
+
+    @NonNull
+    public <T> Future<T> upsert(@NonNull final T object, @NonNull final String conflictColumn) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return SQLite.upsert(object, conflictColumn);
+            }
+        });
+    }
+
+    @NonNull
+    public <T> Future<T> remove(@NonNull final T object) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return SQLite.remove(object);
+            }
+        });
+    }
+
+    /**
+     * @param write executed on the writer thread inside the batch transaction
+     */
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> write) {
+        final Write<T> task = new Write<>(write);
+        mQueue.add(task);
+        schedule(mQueue.size() >= mBatchSize);
+        return task;
+    }
+
+    /**
+     * Blocks until every write submitted before this call is committed.
+     */
+    public void flush() {
+        if (Thread.currentThread() == mWriterThread) {
+            throw new IllegalStateException("flush() called from the writer thread");
+        }
+        final Write<Void> barrier = new Write<>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                return null;
+            }
+        });
+        mQueue.add(barrier);
+        schedule(true);
+        try {
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new SQLiteException("flush failed", e.getCause());
+        }
+    }
+
+    int size() {
+        return mQueue.size();
+    }
+
+    private void schedule(boolean now) {
+        if (now) {
+            mExecutor.execute(mDrain);
+        } else if (mScheduled.compareAndSet(false, true)) {
+            mExecutor.schedule(mDrain, mBatchDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        mWriterThread = Thread.currentThread();
+        mScheduled.set(false);
+        final int batchSize = mBatchSize;
+        final List<Write<?>> batch = new ArrayList<>(Math.min(batchSize, mQueue.size()));
+        Write<?> write;
+        while (batch.size() < batchSize && (write = mQueue.poll()) != null) {
+            if (!write.isCancelled()) {
+                batch.add(write);
+            }
+        }
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+        if (!mQueue.isEmpty()) {
+            schedule(mQueue.size() >= batchSize);
+        }
+    }
+
+    private void commit(@NonNull List<Write<?>> batch) {
+        final SQLiteClient client = SQLite.obtainClient();
+        final Durability durability = mDurability;
+        // connection-wide, also applies to writes of other threads until it is restored
+        long synchronous = -1;
+        if (durability != Durability.DEFAULT) {
+            synchronous = client.queryForLong("PRAGMA synchronous;");
+            client.execute("PRAGMA synchronous = " + durability.mLevel + ";");
+        }
+        try {
+            if (!commitInTransaction(client, batch)) {
+                for (final Write<?> write : batch) {
+                    commitInTransaction(client, Collections.<Write<?>>singletonList(write));
+                }
+            }
+        } finally {
+            if (synchronous >= 0) {
+                client.execute("PRAGMA synchronous = " + synchronous + ";");
+            }
+        }
+    }
+
+    private boolean commitInTransaction(@NonNull SQLiteClient client, @NonNull List<Write<?>> writes) {
+        boolean transaction = client.beginTransaction();
+        try {
+            for (final Write<?> write : writes) {
+                write.execute();
+            }
+            if (transaction) {
+                client.endTransaction();
+                transaction = false;
+            }
+        } catch (Exception e) {
+            if (writes.size() == 1) {
+                writes.get(0).fail(e);
+            }
+            return false;
+        } finally {
+            if (transaction) {
+                client.rollbackTransaction();
+            }
+        }
+        for (final Write<?> write : writes) {
+            write.complete();
+        }
+        return true;
+    }
+
+    public enum Durability {
+
+        /**
+         * Keep the connection setting.
+         */
+        DEFAULT(-1),
+        /**
+         * fsync on every commit.
+         */
+        FULL(2),
+        /**
+         * Fewer fsyncs, in WAL mode the last commits may be lost on power failure but the database stays intact.
+         */
+        NORMAL(1),
+        /**
+         * No fsync at all.
+         */
+        OFF(0);
+
+        final int mLevel;
+
+        Durability(int level) {
+            mLevel = level;
+        }
+
+    }
+
+    private static final class Write<T> extends FutureTask<T> {
+
+        private final Callable<T> mWrite;
+
+        private T mResult;
+
+        Write(@NonNull Callable<T> write) {
+            super(write);
+            mWrite = write;
+        }
+
+        void execute() throws Exception {
+            mResult = mWrite.call();
+        }
+
+        void complete() {
+            set(mResult);
+        }
+
+        void fail(@NonNull Throwable e) {
+            setException(e);
+        }
+
+    }
+
+}
@@ -0,0 +1,10 @@
+package droidkit;
+
+/**
+ * JUnit category of the timing harnesses. They only print their results, so they are excluded from the
+ * unit test run, use {@code ./gradlew testDebugUnitTest -Pbenchmark} to run them.
+ *
+ * @author Daniel Serdyukov
+ */
+public interface Benchmark {
+}
@@ -0,0 +1,136 @@
+package droidkit.sqlite;
+
+import android.database.sqlite.SQLiteDoneException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class AndroidSQLiteClientTest {
+
+    private static final String DB_NAME = "pool-test.db";
+
+    private static final int READERS = 4;
+
+    private static final int IMPORT_ROWS = 20000;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+        SQLiteTestEnv.registerProvider((mProvider = new SQLiteProvider() {
+            @Override
+            protected SQLiteClient createClient() {
+                return new AndroidSQLiteClient(getContext(), DB_NAME, 1, READERS);
+            }
+        }));
+    }
+
+    @Test
+    public void testReadInTransactionSeesWriter() throws Exception {
+        SQLite.beginTransaction();
+        try {
+            SQLite.save(new Foo());
+            Assert.assertEquals(1, SQLite.where(Foo.class).list().size());
+        } finally {
+            SQLite.rollbackTransaction();
+        }
+        Assert.assertEquals(0, SQLite.where(Foo.class).list().size());
+    }
+
+    @Test
+    public void testReadForLong() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        final Foo foo = SQLite.save(new Foo());
+        Assert.assertEquals(foo.getId(), client.readForLong("SELECT MAX(_id) FROM foo;"));
+        Assert.assertEquals(1, client.readForLong("SELECT COUNT(*) FROM foo WHERE _id = ?;", foo.getId()));
+    }
+
+    @Test(expected = SQLiteDoneException.class)
+    public void testReadForLongNoRows() throws Exception {
+        SQLite.obtainClient().readForLong("SELECT _id FROM foo;");
+    }
+
+    @Test
+    public void testReadDuringImport() throws Exception {
+        readDuringImport();
+        Assert.assertEquals(IMPORT_ROWS + 1, SQLite.where(Foo.class).count().intValue());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final long start = System.nanoTime();
+        final int reads = readDuringImport();
+        final long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%d readers: %d reads while importing %d rows in %dms",
+                READERS, reads, IMPORT_ROWS, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLite.obtainClient().close();
+        mProvider.shutdown();
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+    }
+
+    private int readDuringImport() throws InterruptedException {
+        SQLite.save(new Foo());
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean importing = new AtomicBoolean(true);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final List<Foo> foos = new ArrayList<>(IMPORT_ROWS);
+                for (int i = 0; i < IMPORT_ROWS; ++i) {
+                    final Foo foo = new Foo();
+                    foo.setText("Foo #" + i);
+                    foos.add(foo);
+                }
+                SQLite.beginTransaction();
+                try {
+                    started.countDown();
+                    SQLite.saveAll(foos);
+                    SQLite.endTransaction();
+                } finally {
+                    SQLite.rollbackTransaction();
+                    importing.set(false);
+                }
+            }
+        });
+        writer.start();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        int reads = 0;
+        while (importing.get()) {
+            final int count = SQLite.where(Foo.class).count().intValue();
+            Assert.assertTrue(count == 1 || count == IMPORT_ROWS + 1);
+            ++reads;
+        }
+        writer.join();
+        return reads;
+    }
+
+}
@@ -0,0 +1,124 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class CompiledQueryTest {
+
+    private static final int ROWS = 100;
+
+    private static final int ROUNDS = 2000;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testArgs() throws Exception {
+        final CompiledQuery<Foo> query = SQLite.where(Foo.class)
+                .like("text", CompiledQuery.ARG)
+                .and()
+                .lessThanOrEqualTo("_id", 50)
+                .orderBy("_id")
+                .compile();
+        Assert.assertEquals(1, query.getArgCount());
+        Assert.assertEquals(11, query.list("Foo #1%").size());
+        Assert.assertEquals("Foo #42", query.one("Foo #42").getText());
+        Assert.assertNull(query.one("Bar%"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArgCountMismatch() throws Exception {
+        SQLite.where(Foo.class).equalTo("text", CompiledQuery.ARG).compile().list();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        final CompiledQuery<Foo> compiled = SQLite.where(Foo.class)
+                .like("text", CompiledQuery.ARG)
+                .orderBy("_id")
+                .compile();
+        for (int i = 0; i < ROWS; ++i) {
+            final String text = "Foo #" + (i + 1);
+            final List<Foo> foos = compiled.list(text);
+            Assert.assertEquals(1, foos.size());
+            Assert.assertEquals(SQLite.where(Foo.class).like("text", text).one().getId(), foos.get(0).getId());
+        }
+    }
+
+    @Test
+    public void testIdentityMap() throws Exception {
+        SQLite.enableIdentityMap(Foo.class, 16);
+        try {
+            final CompiledQuery<Foo> compiled = SQLite.where(Foo.class)
+                    .equalTo("text", CompiledQuery.ARG)
+                    .compile();
+            final Foo foo = SQLite.where(Foo.class).equalTo("text", "Foo #7").one();
+            Assert.assertNotNull(foo);
+            Assert.assertSame(foo, compiled.one("Foo #7"));
+            Assert.assertSame(foo, compiled.list("Foo #7").get(0));
+        } finally {
+            SQLite.disableIdentityMap(Foo.class);
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final CompiledQuery<Foo> compiled = SQLite.where(Foo.class)
+                .like("text", CompiledQuery.ARG)
+                .orderBy("_id")
+                .compile();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            Assert.assertEquals(1, SQLite.where(Foo.class)
+                    .like("text", "Foo #" + (i % ROWS + 1))
+                    .orderBy("_id")
+                    .list().size());
+        }
+        final long rebuild = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            Assert.assertEquals(1, compiled.list("Foo #" + (i % ROWS + 1)).size());
+        }
+        final long reuse = System.nanoTime() - start;
+        System.out.println(String.format("%d queries: rebuild %dms, compiled %dms", ROUNDS,
+                TimeUnit.NANOSECONDS.toMillis(rebuild), TimeUnit.NANOSECONDS.toMillis(reuse)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
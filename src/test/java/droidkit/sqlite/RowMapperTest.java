@@ -0,0 +1,188 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.dynamic.MethodLookup;
+import droidkit.io.IOUtils;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class RowMapperTest {
+
+    private static final int ROWS = 100;
+
+    private static final int BENCHMARK_ROWS = 10000;
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int MEASURE_ROUNDS = 5;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+    }
+
+    @Test
+    public void testResolveColumnsOncePerCursor() throws Exception {
+        saveFoos(10);
+        final ItemMapper mapper = new ItemMapper();
+        final Cursor cursor = SQLite.where(Foo.class).cursor();
+        try {
+            final List<Item> items = SQLiteList.unpack(cursor, mapper);
+            Assert.assertEquals(10, items.size());
+            Assert.assertEquals("Foo #1", items.get(0).mText);
+            Assert.assertEquals(1, mapper.mResolveCount);
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test
+    public void testHelperRowMapper() throws Exception {
+        saveFoos(1);
+        final List<Foo> foos = SQLite.where(Foo.class).list();
+        Assert.assertEquals(1, foos.size());
+        Assert.assertEquals("Foo #1", foos.get(0).getText());
+        Assert.assertSame(SQLiteSchema.rowMapperOf(Foo.class), SQLiteSchema.rowMapperOf(Foo.class));
+    }
+
+    @Test
+    public void testSameAsPerRowLookup() throws Exception {
+        saveFoos(ROWS);
+        final Cursor cursor = SQLite.where(Foo.class).cursor();
+        try {
+            final List<Foo> expected = unpackPerRowLookup(cursor);
+            final List<Foo> foos = SQLiteList.unpack(cursor, Foo.class);
+            final List<Item> items = SQLiteList.unpack(cursor, new ItemMapper());
+            Assert.assertEquals(ROWS, expected.size());
+            Assert.assertEquals(ROWS, foos.size());
+            Assert.assertEquals(ROWS, items.size());
+            for (int i = 0; i < ROWS; ++i) {
+                Assert.assertEquals(expected.get(i).getText(), foos.get(i).getText());
+                Assert.assertEquals(expected.get(i).getText(), items.get(i).mText);
+            }
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        saveFoos(BENCHMARK_ROWS);
+        final Cursor cursor = SQLite.where(Foo.class).cursor();
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+                unpackPerRowLookup(cursor);
+                SQLiteList.unpack(cursor, Foo.class);
+                SQLiteList.unpack(cursor, new ItemMapper());
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURE_ROUNDS; ++i) {
+                Assert.assertEquals(BENCHMARK_ROWS, unpackPerRowLookup(cursor).size());
+            }
+            final long perRowLookup = (System.nanoTime() - start) / MEASURE_ROUNDS;
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURE_ROUNDS; ++i) {
+                Assert.assertEquals(BENCHMARK_ROWS, SQLiteList.unpack(cursor, Foo.class).size());
+            }
+            final long helperMapper = (System.nanoTime() - start) / MEASURE_ROUNDS;
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURE_ROUNDS; ++i) {
+                Assert.assertEquals(BENCHMARK_ROWS, SQLiteList.unpack(cursor, new ItemMapper()).size());
+            }
+            final long rowMapper = (System.nanoTime() - start) / MEASURE_ROUNDS;
+            System.out.println(String.format("unpack(%d): per-row lookup %dms, helper mapper %dms, row mapper %dms",
+                    BENCHMARK_ROWS, TimeUnit.NANOSECONDS.toMillis(perRowLookup),
+                    TimeUnit.NANOSECONDS.toMillis(helperMapper), TimeUnit.NANOSECONDS.toMillis(rowMapper)));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private void saveFoos(int count) {
+        final List<Foo> foos = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @NonNull
+    private List<Foo> unpackPerRowLookup(@NonNull Cursor cursor) throws Exception {
+        final List<Foo> list = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            do {
+                list.add(MethodLookup.global()
+                        .find(Foo.class.getName() + "$SQLiteHelper", "instantiate", Cursor.class)
+                        .<Foo>invokeStatic(cursor));
+            } while (cursor.moveToNext());
+        }
+        return list;
+    }
+
+    private static class Item {
+
+        long mId;
+
+        String mText;
+
+    }
+
+    private static class ItemMapper implements RowMapper<Item> {
+
+        int mResolveCount;
+
+        @NonNull
+        @Override
+        public int[] resolveColumns(@NonNull Cursor cursor) {
+            ++mResolveCount;
+            return new int[]{
+                    cursor.getColumnIndexOrThrow(BaseColumns._ID),
+                    cursor.getColumnIndexOrThrow("text")
+            };
+        }
+
+        @NonNull
+        @Override
+        public Item map(@NonNull Cursor cursor, @NonNull int[] columns) {
+            final Item item = new Item();
+            item.mId = cursor.getLong(columns[0]);
+            item.mText = cursor.getString(columns[1]);
+            return item;
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteAggregateTest {
+
+    private static final long BIG_ID = (1L << 53) + 1;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+    }
+
+    @Test
+    public void testExactLongs() throws Exception {
+        SQLite.obtainClient().executeInsert("INSERT INTO foo(_id, text) VALUES(?, ?);", BIG_ID, "first");
+        SQLite.obtainClient().executeInsert("INSERT INTO foo(_id, text) VALUES(?, ?);", BIG_ID + 1, "second");
+        final SQLiteAggregate.Row row = SQLite.where(Foo.class)
+                .aggregate()
+                .min("_id")
+                .sum("_id")
+                .count()
+                .execute();
+        Assert.assertEquals(BIG_ID, row.getLong(0));
+        Assert.assertEquals(2 * BIG_ID + 1, row.getLong(1));
+        Assert.assertEquals(2L, row.getNumber(2));
+    }
+
+    @Test
+    public void testOnePass() throws Exception {
+        saveFoos(10);
+        final SQLiteAggregate.Row row = SQLite.where(Foo.class)
+                .greaterThan("_id", 2)
+                .aggregate()
+                .count()
+                .sum("_id")
+                .max("_id")
+                .avg("_id")
+                .execute();
+        Assert.assertEquals(4, row.size());
+        Assert.assertEquals(8, row.getLong(0));
+        Assert.assertEquals(52, row.getLong(1));
+        Assert.assertEquals(10, row.getLong(2));
+        Assert.assertEquals(6.5, row.getDouble(3), 0.0001);
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        saveFoos(10);
+        final Map<Long, SQLiteAggregate.Row> groups = SQLite.where(Foo.class)
+                .aggregate()
+                .count()
+                .sum("_id")
+                .executeGroupedBy("_id % 2");
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(5, groups.get(0L).getLong(0));
+        Assert.assertEquals(30, groups.get(0L).getLong(1));
+        Assert.assertEquals(25, groups.get(1L).getLong(1));
+    }
+
+    @Test
+    public void testGroupByNull() throws Exception {
+        saveFoos(10);
+        final Map<Long, SQLiteAggregate.Row> groups = SQLite.where(Foo.class)
+                .aggregate()
+                .count()
+                .executeGroupedBy("NULLIF(_id % 2, 0)");
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(5, groups.get(null).getLong(0));
+        Assert.assertEquals(5, groups.get(1L).getLong(0));
+        Assert.assertFalse(groups.containsKey(0L));
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void testGroupByText() throws Exception {
+        SQLite.obtainClient().executeInsert("INSERT INTO foo(text) VALUES(?);", "first");
+        SQLite.obtainClient().executeInsert("INSERT INTO foo(text) VALUES(?);", "second");
+        SQLite.where(Foo.class)
+                .aggregate()
+                .count()
+                .executeGroupedBy("text");
+    }
+
+    @Test
+    public void testDoubleResults() throws Exception {
+        saveFoos(3);
+        Assert.assertEquals(1.0, SQLite.where(Foo.class).min("_id"));
+        Assert.assertEquals(3.0, SQLite.where(Foo.class).max("_id"));
+        Assert.assertEquals(6.0, SQLite.where(Foo.class).sum("_id"));
+        Assert.assertEquals(3.0, SQLite.where(Foo.class).count());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Assert.assertEquals(0.0, SQLite.where(Foo.class).count());
+        Assert.assertEquals(0.0, SQLite.where(Foo.class).min("_id"));
+        Assert.assertTrue(SQLite.where(Foo.class).aggregate().max("_id").execute().isNull(0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private void saveFoos(int count) {
+        final List<Foo> foos = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            foos.add(new Foo());
+        }
+        SQLite.saveAll(foos);
+    }
+
+}
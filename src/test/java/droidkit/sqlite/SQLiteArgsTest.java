@@ -0,0 +1,113 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.io.IOUtils;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteArgsTest {
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+    }
+
+    @Test
+    public void testBindTypes() throws Exception {
+        final SQLiteArgs args = new SQLiteArgs(1);
+        args.bindLong(1, 42);
+        args.bindDouble(2, 1.5);
+        args.bindString(3, "text");
+        args.bindBlob(4, new byte[]{1});
+        args.bindNull(5);
+        Assert.assertEquals(5, args.size());
+        Assert.assertEquals(SQLiteArgs.TYPE_LONG, args.typeAt(1));
+        Assert.assertEquals(42, args.longAt(1));
+        Assert.assertEquals(SQLiteArgs.TYPE_DOUBLE, args.typeAt(2));
+        Assert.assertEquals(1.5, args.doubleAt(2), 0);
+        Assert.assertEquals(SQLiteArgs.TYPE_STRING, args.typeAt(3));
+        Assert.assertEquals(SQLiteArgs.TYPE_BLOB, args.typeAt(4));
+        Assert.assertEquals(SQLiteArgs.TYPE_NULL, args.typeAt(5));
+        args.clearBindings();
+        Assert.assertEquals(0, args.size());
+    }
+
+    @Test
+    public void testQueryKeepsTypes() throws Exception {
+        final SQLiteArgs args = new SQLiteArgs();
+        args.bindLong(1, 1);
+        args.bindDouble(2, 2.5);
+        args.bindString(3, "3");
+        final Cursor cursor = SQLite.obtainClient().query("SELECT typeof(?), typeof(?), typeof(?)", args);
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            Assert.assertEquals("integer", cursor.getString(0));
+            Assert.assertEquals("real", cursor.getString(1));
+            Assert.assertEquals("text", cursor.getString(2));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test
+    public void testObjectQueryKeepsTypes() throws Exception {
+        final Cursor cursor = SQLite.obtainClient().query("SELECT typeof(?), typeof(?), typeof(?)", 1L, 2.5, true);
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            Assert.assertEquals("integer", cursor.getString(0));
+            Assert.assertEquals("real", cursor.getString(1));
+            Assert.assertEquals("integer", cursor.getString(2));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test
+    public void testObjectQueryFallsBackToString() throws Exception {
+        final Cursor cursor = SQLite.obtainClient().query("SELECT typeof(?), ?", 'c', 'c');
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            Assert.assertEquals("text", cursor.getString(0));
+            Assert.assertEquals("c", cursor.getString(1));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void testUnsupportedWriteArg() throws Exception {
+        SQLite.obtainClient().execute("SELECT ?;", 'c');
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        final SQLiteArgs args = new SQLiteArgs();
+        for (int i = 0; i < 3; ++i) {
+            args.clearBindings();
+            args.bindLong(1, i);
+            Assert.assertEquals(String.valueOf(i * 2), SQLite.obtainClient().queryForString("SELECT ? * 2", args));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
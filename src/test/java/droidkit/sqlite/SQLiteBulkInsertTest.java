@@ -0,0 +1,197 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteBulkInsertTest {
+
+    private static final String TABLE = "bulk";
+
+    private static final int BENCHMARK_ROWS = 10000;
+
+    private static final SQLiteRowWriter<Row> WRITER = new SQLiteRowWriter<Row>() {
+        @NonNull
+        @Override
+        public String[] getColumns() {
+            return new String[]{"title", "amount"};
+        }
+
+        @Override
+        public long getId(@NonNull Row object) {
+            return object.mId;
+        }
+
+        @Override
+        public void setId(@NonNull Row object, long id) {
+            object.mId = id;
+        }
+
+        @Override
+        public void bindRow(@NonNull SQLiteBindable stmt, int offset, @NonNull Row object) {
+            stmt.bindString(offset + 1, object.mTitle);
+            stmt.bindLong(offset + 2, object.mAmount);
+        }
+    };
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLiteTestEnv.registerProvider((mProvider = new SQLiteProvider() {
+            @Override
+            protected SQLiteClient createClient() {
+                return new AndroidSQLiteClient(getContext(), null, 1) {
+                    @Override
+                    protected void onCreate(@NonNull SQLiteDb db) {
+                        db.compileStatement("CREATE TABLE " + TABLE + "(_id INTEGER PRIMARY KEY," +
+                                " title TEXT UNIQUE ON CONFLICT REPLACE, amount INTEGER);").execute();
+                    }
+                };
+            }
+        }));
+    }
+
+    @Test
+    public void testBuildSql() throws Exception {
+        Assert.assertEquals("INSERT INTO bulk(_id, title, amount) VALUES(?, ?, ?), (?, ?, ?);",
+                SQLiteBulkInsert.buildSql(TABLE, WRITER.getColumns(), 2));
+    }
+
+    @Test
+    public void testChunkSize() throws Exception {
+        Assert.assertEquals(SQLiteBulkInsert.MAX_ROWS, SQLiteBulkInsert.chunkSize(1));
+        Assert.assertEquals(333, SQLiteBulkInsert.chunkSize(3));
+        Assert.assertEquals(1, SQLiteBulkInsert.chunkSize(SQLiteBulkInsert.MAX_BIND_ARGS + 1));
+    }
+
+    @Test
+    public void testInsertAll() throws Exception {
+        final List<Row> rows = createRows(1200);
+        insertAll(rows);
+        Assert.assertEquals("1200", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+        for (final Row row : rows) {
+            Assert.assertEquals(row.mTitle, SQLite.obtainClient().queryForString("SELECT title FROM " + TABLE +
+                    " WHERE _id = ?", row.mId));
+        }
+    }
+
+    @Test
+    public void testInsertAllKeepsIds() throws Exception {
+        final List<Row> rows = createRows(3);
+        rows.get(0).mId = 100;
+        insertAll(rows);
+        Assert.assertEquals(100, rows.get(0).mId);
+        Assert.assertEquals(101, rows.get(1).mId);
+        Assert.assertEquals(102, rows.get(2).mId);
+        Assert.assertEquals("Row #1", SQLite.obtainClient().queryForString("SELECT title FROM " + TABLE +
+                " WHERE _id = ?", 100));
+    }
+
+    @Test
+    public void testInsertAllKeepsOrder() throws Exception {
+        final List<Row> rows = createRows(3);
+        rows.get(1).mId = 100;
+        insertAll(rows);
+        Assert.assertEquals(1, rows.get(0).mId);
+        Assert.assertEquals(100, rows.get(1).mId);
+        Assert.assertEquals(101, rows.get(2).mId);
+    }
+
+    @Test
+    public void testInsertAllReplaces() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        client.executeInsert("INSERT INTO " + TABLE + "(_id, title, amount) VALUES(?, ?, ?);", 50, "Row #2", 0);
+        final List<Row> rows = createRows(3);
+        insertAll(rows);
+        Assert.assertEquals("3", client.queryForString("SELECT COUNT(*) FROM " + TABLE));
+        for (final Row row : rows) {
+            Assert.assertEquals(row.mTitle, client.queryForString("SELECT title FROM " + TABLE +
+                    " WHERE _id = ?", row.mId));
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final List<Row> rows = createRows(BENCHMARK_ROWS);
+        final SQLiteClient client = SQLite.obtainClient();
+        long start = System.nanoTime();
+        client.beginTransaction();
+        for (final Row row : rows) {
+            row.mId = client.executeInsert("INSERT INTO " + TABLE + "(_id, title, amount) VALUES(?, ?, ?);",
+                    null, row.mTitle, row.mAmount);
+        }
+        client.endTransaction();
+        final long perRow = System.nanoTime() - start;
+        client.executeUpdateDelete("DELETE FROM " + TABLE + ";");
+
+        final List<Row> bulkRows = createRows(BENCHMARK_ROWS);
+        start = System.nanoTime();
+        insertAll(bulkRows);
+        final long bulk = System.nanoTime() - start;
+
+        Assert.assertEquals(String.valueOf(BENCHMARK_ROWS),
+                client.queryForString("SELECT COUNT(*) FROM " + TABLE));
+        System.out.println(String.format("saveAll(%d): per-row %dms, bulk %dms", BENCHMARK_ROWS,
+                TimeUnit.NANOSECONDS.toMillis(perRow), TimeUnit.NANOSECONDS.toMillis(bulk)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private void insertAll(@NonNull List<Row> rows) {
+        final SQLiteClient client = SQLite.obtainClient();
+        client.beginTransaction();
+        try {
+            SQLiteBulkInsert.insertAll(client, TABLE, WRITER, rows);
+        } finally {
+            client.endTransaction();
+        }
+    }
+
+    @NonNull
+    private List<Row> createRows(int count) {
+        final List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            final Row row = new Row();
+            row.mTitle = "Row #" + (i + 1);
+            row.mAmount = i;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static class Row {
+
+        long mId;
+
+        String mTitle;
+
+        long mAmount;
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteChangeTrackerTest {
+
+    private static final int ROWS = 500;
+
+    private static final int BENCHMARK_ROWS = 5000;
+
+    private SQLiteProvider mProvider;
+
+    private SQLiteChangeTracker mTracker;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        mTracker = SQLiteChangeTracker.of(SQLite.obtainClient());
+    }
+
+    @Test
+    public void testChangesSince() throws Exception {
+        final Foo first = saveFoo("first");
+        final Foo second = saveFoo("second");
+        final long version = mTracker.track("foo");
+        final Foo third = saveFoo("third");
+        updateText(second, "second, updated");
+        SQLite.remove(first);
+        final SQLiteChangeSet changes = mTracker.changesSince("foo", version);
+        Assert.assertFalse(changes.isOverflow());
+        Assert.assertTrue(changes.getInserted().contains(third.getId()));
+        Assert.assertTrue(changes.getUpdated().contains(second.getId()));
+        Assert.assertTrue(changes.getDeleted().contains(first.getId()));
+        Assert.assertTrue(mTracker.changesSince("foo", changes.getVersion()).isEmpty());
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        final long version = mTracker.track("foo");
+        final Foo foo = saveFoo("transient");
+        SQLite.remove(foo);
+        Assert.assertTrue(mTracker.changesSince("foo", version).isEmpty());
+    }
+
+    @Test
+    public void testOverflowBeforeTrack() throws Exception {
+        Assert.assertTrue(mTracker.changesSince("foo", 0).isOverflow());
+    }
+
+    @Test
+    public void testUntrack() throws Exception {
+        final long version = mTracker.track("foo");
+        mTracker.track("foo");
+        mTracker.untrack("foo");
+        saveFoo("tracked");
+        Assert.assertEquals(1, mTracker.changesSince("foo", version).getInserted().size());
+        mTracker.untrack("foo");
+        Assert.assertEquals(0, SQLite.obtainClient().queryForLong("SELECT COUNT(*) FROM sqlite_temp_master" +
+                " WHERE type = 'trigger';"));
+        saveFoo("untracked");
+        Assert.assertEquals(0, SQLite.obtainClient().queryForLong("SELECT COUNT(*) FROM droidkit_changes;"));
+        Assert.assertTrue(mTracker.changesSince("foo", version).isOverflow());
+    }
+
+    @Test
+    public void testSnapshotRelease() throws Exception {
+        final SQLiteQuery<Foo> query = SQLite.where(Foo.class);
+        final SQLiteSnapshot<Foo> snapshot = SQLiteSnapshot.load(query, Foo.class);
+        saveFoo("first");
+        final SQLiteSnapshot<Foo> updated = snapshot.update(query, Foo.class);
+        Assert.assertEquals(1, updated.list().size());
+        snapshot.release();
+        saveFoo("second");
+        final SQLiteSnapshot<Foo> latest = updated.update(query, Foo.class);
+        Assert.assertEquals(2, latest.list().size());
+        latest.release();
+        Assert.assertEquals(0, SQLite.obtainClient().queryForLong("SELECT COUNT(*) FROM sqlite_temp_master" +
+                " WHERE type = 'trigger';"));
+    }
+
+    @Test
+    public void testSnapshotDelta() throws Exception {
+        final Foo first = saveFoo("first");
+        final Foo second = saveFoo("second");
+        final SQLiteQuery<Foo> query = SQLite.where(Foo.class).like("text", "%st%");
+        final SQLiteSnapshot<Foo> snapshot = SQLiteSnapshot.load(query, Foo.class);
+        Assert.assertEquals(1, snapshot.list().size());
+        Assert.assertSame(snapshot, snapshot.update(query, Foo.class));
+        updateText(second, "second, first");
+        saveFoo("third, last");
+        saveFoo("fourth");
+        final List<Foo> foos = snapshot.update(query, Foo.class).list();
+        Assert.assertEquals(3, foos.size());
+        Assert.assertSame(snapshot.list().get(0), foos.get(0));
+        Assert.assertEquals(first.getId(), foos.get(0).getId());
+        Assert.assertEquals("second, first", foos.get(1).getText());
+        Assert.assertEquals("third, last", foos.get(2).getText());
+    }
+
+    @Test
+    public void testDeltaOfLargeSnapshot() throws Exception {
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+        final SQLiteQuery<Foo> query = SQLite.where(Foo.class);
+        final SQLiteSnapshot<Foo> snapshot = SQLiteSnapshot.load(query, Foo.class);
+        final Foo unchanged = snapshot.list().get(0);
+        updateText(snapshot.list().get(ROWS / 2), "updated");
+        final SQLiteSnapshot<Foo> latest = snapshot.update(query, Foo.class);
+        Assert.assertEquals(ROWS, latest.list().size());
+        Assert.assertSame(unchanged, latest.list().get(0));
+        Assert.assertEquals("updated", latest.list().get(ROWS / 2).getText());
+        latest.release();
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final List<Foo> foos = new ArrayList<>(BENCHMARK_ROWS);
+        for (int i = 0; i < BENCHMARK_ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+        final SQLiteQuery<Foo> query = SQLite.where(Foo.class);
+        SQLiteSnapshot<Foo> snapshot = SQLiteSnapshot.load(query, Foo.class);
+        final Foo foo = snapshot.list().get(BENCHMARK_ROWS / 2);
+        updateText(foo, "updated");
+        long start = System.nanoTime();
+        Assert.assertEquals(BENCHMARK_ROWS, query.list().size());
+        final long requery = System.nanoTime() - start;
+        start = System.nanoTime();
+        snapshot = snapshot.update(query, Foo.class);
+        final long delta = System.nanoTime() - start;
+        Assert.assertEquals(BENCHMARK_ROWS, snapshot.list().size());
+        Assert.assertEquals("updated", snapshot.list().get(BENCHMARK_ROWS / 2).getText());
+        snapshot.release();
+        System.out.println(String.format("reload(%d rows, 1 changed): requery %dms, delta %dms", BENCHMARK_ROWS,
+                TimeUnit.NANOSECONDS.toMillis(requery), TimeUnit.NANOSECONDS.toMillis(delta)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private Foo saveFoo(String text) {
+        final Foo foo = new Foo();
+        foo.setText(text);
+        return SQLite.save(foo);
+    }
+
+    private void updateText(Foo foo, String text) {
+        SQLite.obtainClient().executeUpdateDelete("UPDATE foo SET text = ? WHERE _id = ?;", text, foo.getId());
+    }
+
+}
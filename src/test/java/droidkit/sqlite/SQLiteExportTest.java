@@ -0,0 +1,160 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.io.IOUtils;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteExportTest {
+
+    private static final String TABLE = "e_test";
+
+    private static final Uri URI = new Uri.Builder()
+            .scheme("content")
+            .authority(BuildConfig.APPLICATION_ID)
+            .path(TABLE)
+            .build();
+
+    private static final int ROWS = 100;
+
+    private static final int BENCHMARK_ROWS = 5000;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLiteTestEnv.registerProvider((mProvider = new SQLiteProvider() {
+            @Override
+            protected SQLiteClient createClient() {
+                return new AndroidSQLiteClient(getContext(), null, 1) {
+                    @Override
+                    protected void onCreate(@NonNull SQLiteDb db) {
+                        db.compileStatement("CREATE TABLE " + TABLE + "(_id INTEGER PRIMARY KEY," +
+                                " name TEXT, weight REAL, data BLOB);").execute();
+                    }
+                };
+            }
+        }));
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        client.executeInsert("INSERT INTO " + TABLE + "(name, weight, data) VALUES(?, ?, ?);",
+                "a\"b\nc", 1.5, new byte[]{1, 2, 3});
+        client.executeInsert("INSERT INTO " + TABLE + "(name, weight, data) VALUES(NULL, NULL, NULL);");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Cursor cursor = mProvider.query(URI, null, null, null, null);
+        try {
+            Assert.assertEquals(2, SQLiteExport.writeNdjson(cursor, out));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        Assert.assertEquals("{\"_id\":1,\"name\":\"a\\\"b\\nc\",\"weight\":1.5,\"data\":\"AQID\"}\n" +
+                "{\"_id\":2,\"name\":null,\"weight\":null,\"data\":null}\n", out.toString("UTF-8"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testExportIsReadOnly() throws Exception {
+        mProvider.openFile(URI.buildUpon()
+                .appendQueryParameter(SQLiteProvider.QUERY_EXPORT, SQLiteProvider.EXPORT_NDJSON)
+                .build(), "w");
+    }
+
+    @Test
+    public void testRowCount() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        client.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; ++i) {
+                client.executeInsert("INSERT INTO " + TABLE + "(name, weight, data) VALUES(?, ?, ?);",
+                        "row #" + i, i * 0.5, new byte[]{(byte) i});
+            }
+            client.endTransaction();
+        } finally {
+            client.rollbackTransaction();
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Cursor cursor = mProvider.query(URI, null, null, null, null);
+        try {
+            Assert.assertEquals(ROWS, SQLiteExport.writeNdjson(cursor, out));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        final String[] lines = out.toString("UTF-8").split("\n");
+        Assert.assertEquals(ROWS, lines.length);
+        Assert.assertTrue(lines[ROWS - 1].startsWith("{\"_id\":" + ROWS + ",\"name\":\"row #" + (ROWS - 1) +
+                "\","));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        client.beginTransaction();
+        try {
+            for (int i = 0; i < BENCHMARK_ROWS; ++i) {
+                client.executeInsert("INSERT INTO " + TABLE + "(name, weight, data) VALUES(?, ?, ?);",
+                        "row #" + i, i * 0.5, new byte[]{(byte) i});
+            }
+            client.endTransaction();
+        } finally {
+            client.rollbackTransaction();
+        }
+        long start = System.nanoTime();
+        Cursor cursor = mProvider.query(URI, null, null, null, null);
+        int rows = 0;
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+                cursor.getString(1);
+                cursor.getDouble(2);
+                cursor.getBlob(3);
+                ++rows;
+            }
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        final long iterate = System.nanoTime() - start;
+        Assert.assertEquals(BENCHMARK_ROWS, rows);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        cursor = mProvider.query(URI, null, null, null, null);
+        try {
+            Assert.assertEquals(BENCHMARK_ROWS, SQLiteExport.writeNdjson(cursor, out));
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        final long export = System.nanoTime() - start;
+        System.out.println(String.format("export(%d): cursor %dms, ndjson %dms (%d bytes)", BENCHMARK_ROWS,
+                TimeUnit.NANOSECONDS.toMillis(iterate), TimeUnit.NANOSECONDS.toMillis(export), out.size()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
@@ -0,0 +1,115 @@
+package droidkit.sqlite;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteIdentityMapTest {
+
+    private SQLiteProvider mProvider;
+
+    private Foo mFoo;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        SQLite.enableIdentityMap(Foo.class, 16);
+        mFoo = new Foo();
+        mFoo.setText("first");
+        SQLite.save(mFoo);
+    }
+
+    @Test
+    public void testSameInstance() throws Exception {
+        final Foo foo = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotNull(foo);
+        Assert.assertSame(foo, SQLite.where(Foo.class).withId(mFoo.getId()));
+        final List<Foo> foos = SQLite.where(Foo.class).list();
+        Assert.assertSame(foo, foos.get(0));
+    }
+
+    @Test
+    public void testEvictOnWrite() throws Exception {
+        final Foo foo = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotNull(foo);
+        SQLite.where(Foo.class).set("text", "bulk").update();
+        final Foo updated = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotSame(foo, updated);
+        Assert.assertEquals("bulk", updated.getText());
+        SQLite.remove(updated);
+        Assert.assertNull(SQLite.where(Foo.class).withId(mFoo.getId()));
+    }
+
+    @Test
+    public void testEvictById() throws Exception {
+        final Foo second = new Foo();
+        second.setText("second");
+        SQLite.save(second);
+        final Foo cached = SQLite.where(Foo.class).withId(second.getId());
+        final Foo foo = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotNull(foo);
+        foo.setText("updated");
+        SQLite.update(foo);
+        Assert.assertSame(cached, SQLite.where(Foo.class).withId(second.getId()));
+        Assert.assertNotSame(foo, SQLite.where(Foo.class).withId(mFoo.getId()));
+    }
+
+    @Test
+    public void testLazyList() throws Exception {
+        final Foo foo = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertSame(foo, SQLite.where(Foo.class).lazyList().get(0));
+    }
+
+    @Test
+    public void testEvictOnProviderWrite() throws Exception {
+        final Foo foo = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotNull(foo);
+        final ContentValues values = new ContentValues();
+        values.put("text", "provider");
+        mProvider.update(ContentUris.withAppendedId(SQLiteSchema.resolveUri(Foo.class), mFoo.getId()),
+                values, null, null);
+        final Foo updated = SQLite.where(Foo.class).withId(mFoo.getId());
+        Assert.assertNotSame(foo, updated);
+        Assert.assertEquals("provider", updated.getText());
+        mProvider.delete(SQLiteSchema.resolveUri(Foo.class), null, null);
+        Assert.assertNull(SQLite.where(Foo.class).withId(mFoo.getId()));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        final SQLiteIdentityMap<Object> identityMap = new SQLiteIdentityMap<>(2);
+        final Object first = new Object();
+        identityMap.put(1, first);
+        identityMap.put(2, new Object());
+        Assert.assertSame(first, identityMap.get(1));
+        identityMap.put(3, new Object());
+        Assert.assertEquals(2, identityMap.size());
+        Assert.assertNull(identityMap.get(2));
+        Assert.assertSame(first, identityMap.get(1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLite.disableIdentityMap(Foo.class);
+        mProvider.shutdown();
+    }
+
+}
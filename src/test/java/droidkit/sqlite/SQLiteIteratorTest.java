@@ -0,0 +1,133 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteIteratorTest {
+
+    private static final int ROWS = 100;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testIterate() throws Exception {
+        final SQLiteIterator<Foo> iterator = SQLite.where(Foo.class).iterate();
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals("Foo #" + (++count), iterator.next().getText());
+        }
+        Assert.assertEquals(ROWS, count);
+    }
+
+    @Test
+    public void testReuseHolder() throws Exception {
+        final Holder holder = new Holder();
+        final SQLiteIterator<Holder> iterator = SQLite.where(Foo.class).iterate(new HolderMapper(holder));
+        try {
+            long sum = 0;
+            while (iterator.hasNext()) {
+                Assert.assertSame(holder, iterator.next());
+                sum += holder.mId;
+            }
+            Assert.assertEquals(ROWS * (ROWS + 1) / 2, sum);
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test
+    public void testForEach() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        SQLite.where(Foo.class).forEach(new Action1<Foo>() {
+            @Override
+            public void call(Foo foo) {
+                count.incrementAndGet();
+            }
+        });
+        Assert.assertEquals(ROWS, count.get());
+    }
+
+    @Test
+    public void testStreamBackpressure() throws Exception {
+        final TestSubscriber<Foo> subscriber = new TestSubscriber<>();
+        subscriber.requestMore(0);
+        SQLite.where(Foo.class).stream().subscribe(subscriber);
+        subscriber.requestMore(10);
+        Assert.assertEquals(10, subscriber.getOnNextEvents().size());
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.assertCompleted();
+        Assert.assertEquals(ROWS, subscriber.getOnNextEvents().size());
+        Assert.assertEquals("Foo #100", subscriber.getOnNextEvents().get(ROWS - 1).getText());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private static class Holder {
+
+        long mId;
+
+    }
+
+    private static class HolderMapper implements RowMapper<Holder> {
+
+        private final Holder mHolder;
+
+        HolderMapper(Holder holder) {
+            mHolder = holder;
+        }
+
+        @NonNull
+        @Override
+        public int[] resolveColumns(@NonNull Cursor cursor) {
+            return new int[]{cursor.getColumnIndexOrThrow(BaseColumns._ID)};
+        }
+
+        @NonNull
+        @Override
+        public Holder map(@NonNull Cursor cursor, @NonNull int[] columns) {
+            mHolder.mId = cursor.getLong(columns[0]);
+            return mHolder;
+        }
+
+    }
+
+}
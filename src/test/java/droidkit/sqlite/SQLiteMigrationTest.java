@@ -0,0 +1,146 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteMigrationTest {
+
+    private static final String DB_NAME = "migration-test.db";
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void testPlanAddColumn() throws Exception {
+        Assert.assertEquals(Arrays.asList(
+                "ALTER TABLE foo ADD COLUMN rank INTEGER NOT NULL DEFAULT 0;",
+                "CREATE TABLE IF NOT EXISTS bar(_id INTEGER PRIMARY KEY);"
+        ), SQLiteMigration.plan(Arrays.asList(
+                "CREATE TABLE android_metadata (locale TEXT)",
+                "CREATE TABLE foo(_id INTEGER PRIMARY KEY, text TEXT)",
+                "CREATE INDEX idx_foo_text ON foo(text)"
+        ), Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS foo(_id INTEGER PRIMARY KEY, text TEXT, rank INTEGER NOT NULL DEFAULT 0);",
+                "CREATE TABLE IF NOT EXISTS bar(_id INTEGER PRIMARY KEY);",
+                "CREATE INDEX IF NOT EXISTS idx_foo_text ON foo(text);"
+        ), false));
+    }
+
+    @Test
+    public void testPlanRebuild() throws Exception {
+        Assert.assertEquals(Arrays.asList(
+                "DROP TRIGGER IF EXISTS delete_foo_after_bar;",
+                "CREATE TABLE _migration_foo(_id INTEGER PRIMARY KEY, text TEXT);",
+                "INSERT INTO _migration_foo(_id, text) SELECT _id, text FROM foo;",
+                "DROP TABLE foo;",
+                "ALTER TABLE _migration_foo RENAME TO foo;",
+                "CREATE INDEX IF NOT EXISTS idx_foo_text ON foo(text);",
+                "CREATE TRIGGER IF NOT EXISTS delete_foo_after_bar AFTER DELETE ON bar FOR EACH ROW" +
+                        " BEGIN DELETE FROM foo; END;"
+        ), SQLiteMigration.plan(Arrays.asList(
+                "CREATE TABLE foo(_id INTEGER PRIMARY KEY, text TEXT, legacy TEXT)",
+                "CREATE INDEX idx_foo_text ON foo(text)",
+                "CREATE TABLE bar(_id INTEGER PRIMARY KEY)",
+                "CREATE TRIGGER delete_foo_after_bar AFTER DELETE ON bar FOR EACH ROW BEGIN DELETE FROM foo; END"
+        ), Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS foo(_id INTEGER PRIMARY KEY, text TEXT);",
+                "CREATE TABLE IF NOT EXISTS bar(_id INTEGER PRIMARY KEY);",
+                "CREATE INDEX IF NOT EXISTS idx_foo_text ON foo(text);",
+                "CREATE TRIGGER IF NOT EXISTS delete_foo_after_bar AFTER DELETE ON bar FOR EACH ROW" +
+                        " BEGIN DELETE FROM foo; END;"
+        ), false));
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void testPlanRequiredColumn() throws Exception {
+        SQLiteMigration.plan(Arrays.asList(
+                "CREATE TABLE foo(_id INTEGER PRIMARY KEY, legacy TEXT)"
+        ), Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS foo(_id INTEGER PRIMARY KEY, text TEXT NOT NULL);"
+        ), false);
+    }
+
+    @Test
+    public void testPlanRequiredColumnDestructive() throws Exception {
+        Assert.assertEquals(Arrays.asList(
+                "DROP TABLE IF EXISTS foo;",
+                "CREATE TABLE IF NOT EXISTS foo(_id INTEGER PRIMARY KEY, text TEXT NOT NULL);"
+        ), SQLiteMigration.plan(Arrays.asList(
+                "CREATE TABLE foo(_id INTEGER PRIMARY KEY, legacy TEXT)"
+        ), Arrays.asList(
+                "CREATE TABLE IF NOT EXISTS foo(_id INTEGER PRIMARY KEY, text TEXT NOT NULL);"
+        ), true));
+    }
+
+    @Test
+    public void testUpgradeKeepsRows() throws Exception {
+        new AndroidSQLiteClient(RuntimeEnvironment.application, DB_NAME, 1) {
+            @Override
+            protected void onCreate(@NonNull SQLiteDb db) {
+                db.compileStatement("CREATE TABLE foo(_id INTEGER PRIMARY KEY ON CONFLICT REPLACE);").execute();
+                db.compileStatement("CREATE TABLE bar(_id INTEGER PRIMARY KEY ON CONFLICT REPLACE, text TEXT," +
+                        " legacy TEXT);").execute();
+                for (int i = 0; i < 3; ++i) {
+                    db.compileStatement("INSERT INTO foo DEFAULT VALUES;").execute();
+                }
+                db.compileStatement("INSERT INTO bar(text, legacy) VALUES('bar', 'legacy');").execute();
+            }
+        }.close();
+        final AtomicInteger progress = new AtomicInteger();
+        SQLiteTestEnv.registerProvider((mProvider = new SQLiteProvider() {
+            @Override
+            protected SQLiteClient createClient() {
+                return new AndroidSQLiteClient(getContext(), DB_NAME, 2) {
+                    @Override
+                    protected void onUpgradeProgress(int step, int steps) {
+                        Assert.assertEquals(progress.incrementAndGet(), step);
+                    }
+                };
+            }
+        }));
+        Assert.assertTrue(progress.get() > 0);
+        Assert.assertEquals(3, SQLite.where(Foo.class).list().size());
+        final SQLiteClient client = SQLite.obtainClient();
+        Assert.assertEquals("CREATE TABLE foo(_id INTEGER PRIMARY KEY ON CONFLICT REPLACE, text TEXT)",
+                client.queryForString("SELECT sql FROM sqlite_master WHERE name = 'foo';"));
+        Assert.assertEquals("bar", client.queryForString("SELECT text FROM bar;"));
+        Assert.assertFalse(client.queryForString("SELECT sql FROM sqlite_master WHERE name = 'bar';")
+                .contains("legacy"));
+        Assert.assertEquals(2, client.queryForLong("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger';"));
+        Assert.assertEquals(0, client.queryForLong("SELECT COUNT(*) FROM sqlite_master" +
+                " WHERE name LIKE '%migration%';"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mProvider != null) {
+            mProvider.shutdown();
+        }
+        RuntimeEnvironment.application.deleteDatabase(DB_NAME);
+    }
+
+}
@@ -0,0 +1,126 @@
+package droidkit.sqlite;
+
+import android.database.ContentObserver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteNotifierTest {
+
+    private SQLiteProvider mProvider;
+
+    private CountingObserver mObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        mObserver = new CountingObserver();
+        RuntimeEnvironment.application.getContentResolver()
+                .registerContentObserver(SQLiteSchema.resolveUri(Foo.class), true, mObserver);
+    }
+
+    @Test
+    public void testCoalesceInTransaction() throws Exception {
+        SQLite.beginTransaction();
+        for (int i = 0; i < 100; ++i) {
+            SQLite.save(new Foo());
+            SQLite.notifyChange(Foo.class);
+        }
+        Assert.assertEquals(0, mObserver.mChanges.get());
+        SQLite.endTransaction();
+        Assert.assertEquals(1, mObserver.mChanges.get());
+    }
+
+    @Test
+    public void testDropOnRollback() throws Exception {
+        SQLite.beginTransaction();
+        SQLite.save(new Foo());
+        SQLite.notifyChange(Foo.class);
+        SQLite.rollbackTransaction();
+        Assert.assertEquals(0, mObserver.mChanges.get());
+    }
+
+    @Test
+    public void testMutePerThread() throws Exception {
+        final CountDownLatch muted = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteSchema.mute(Foo.class);
+                muted.countDown();
+                try {
+                    done.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    SQLiteSchema.unmute(Foo.class);
+                }
+            }
+        });
+        thread.start();
+        Assert.assertTrue(muted.await(5, TimeUnit.SECONDS));
+        SQLite.notifyChange(Foo.class);
+        done.countDown();
+        thread.join();
+        Assert.assertEquals(1, mObserver.mChanges.get());
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        SQLite.setNotifyChangeDelay(1, TimeUnit.HOURS);
+        try {
+            for (int i = 0; i < 10; ++i) {
+                SQLite.notifyChange(Foo.class);
+            }
+            Assert.assertEquals(0, mObserver.mChanges.get());
+            SQLiteNotifier.flush();
+            Assert.assertEquals(1, mObserver.mChanges.get());
+            SQLiteNotifier.flush();
+            Assert.assertEquals(1, mObserver.mChanges.get());
+        } finally {
+            SQLite.setNotifyChangeDelay(0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RuntimeEnvironment.application.getContentResolver().unregisterContentObserver(mObserver);
+        mProvider.shutdown();
+    }
+
+    private static class CountingObserver extends ContentObserver {
+
+        final AtomicInteger mChanges = new AtomicInteger();
+
+        CountingObserver() {
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            mChanges.incrementAndGet();
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteObserveTest {
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final Foo foo = new Foo();
+        foo.setText("first");
+        SQLite.save(foo);
+    }
+
+    @Test
+    public void testObserve() throws Exception {
+        final BlockingQueue<List<Foo>> results = new LinkedBlockingQueue<>();
+        final Subscription subscription = SQLite.where(Foo.class)
+                .observe(Schedulers.io(), 10, TimeUnit.MILLISECONDS)
+                .subscribe(new QueueSubscriber<>(results, Long.MAX_VALUE));
+        try {
+            Assert.assertEquals(1, results.poll(5, TimeUnit.SECONDS).size());
+            SQLite.save(new Foo());
+            Assert.assertEquals(2, results.poll(5, TimeUnit.SECONDS).size());
+            SQLite.notifyChange(Foo.class);
+            Assert.assertNull(results.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            subscription.unsubscribe();
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final BlockingQueue<List<Foo>> results = new LinkedBlockingQueue<>();
+        final QueueSubscriber<Foo> subscriber = new QueueSubscriber<>(results, 1);
+        final Subscription subscription = SQLite.where(Foo.class)
+                .observe(Schedulers.io(), 0, TimeUnit.MILLISECONDS)
+                .subscribe(subscriber);
+        try {
+            Assert.assertEquals(1, results.poll(5, TimeUnit.SECONDS).size());
+            for (int i = 0; i < 10; ++i) {
+                SQLite.save(new Foo());
+            }
+            Assert.assertNull(results.poll(200, TimeUnit.MILLISECONDS));
+            subscriber.requestMore(1);
+            Assert.assertEquals(11, results.poll(5, TimeUnit.SECONDS).size());
+        } finally {
+            subscription.unsubscribe();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private static class QueueSubscriber<T> extends Subscriber<List<T>> {
+
+        private final BlockingQueue<List<T>> mQueue;
+
+        private final long mInitialRequest;
+
+        QueueSubscriber(BlockingQueue<List<T>> queue, long initialRequest) {
+            mQueue = queue;
+            mInitialRequest = initialRequest;
+        }
+
+        @Override
+        public void onStart() {
+            request(mInitialRequest);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new AssertionError(e);
+        }
+
+        @Override
+        public void onNext(List<T> list) {
+            mQueue.add(list);
+        }
+
+        void requestMore(long n) {
+            request(n);
+        }
+
+    }
+
+}
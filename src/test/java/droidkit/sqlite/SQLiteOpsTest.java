@@ -0,0 +1,148 @@
+package droidkit.sqlite;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.dynamic.MethodLookup;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteOpsTest {
+
+    private static final int ROWS = 100;
+
+    private static final int BENCHMARK_ROWS = 2000;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+    }
+
+    @Test
+    public void testAttachedOps() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        SQLiteSchema.attachTableInfo(Counter.class, "counter", Counter.class);
+        SQLiteSchema.attachOps(Counter.class, new SQLiteOps<Counter>() {
+            @Override
+            public void save(@NonNull SQLiteClient client, @NonNull Counter object) {
+                calls.add("save");
+            }
+
+            @Override
+            public void update(@NonNull SQLiteClient client, @NonNull Counter object) {
+                calls.add("update");
+            }
+
+            @Override
+            public void remove(@NonNull SQLiteClient client, @NonNull Counter object) {
+                calls.add("remove");
+            }
+        });
+        final Counter counter = new Counter();
+        Assert.assertSame(counter, SQLite.save(counter));
+        SQLite.update(counter);
+        SQLite.remove(counter);
+        Assert.assertEquals("[save, update, remove]", calls.toString());
+    }
+
+    @Test
+    public void testHelperOps() throws Exception {
+        final Foo foo = new Foo();
+        foo.setText("first");
+        SQLite.save(foo);
+        Assert.assertTrue(SQLiteSchema.opsOf(Foo.class) instanceof HelperOps);
+        foo.setText("second");
+        SQLite.update(foo);
+        Assert.assertEquals("second", SQLite.where(Foo.class).withId(foo.getId()).getText());
+        SQLite.remove(foo);
+        Assert.assertEquals(0, SQLite.where(Foo.class).count().intValue());
+    }
+
+    @Test
+    public void testUpdateInTransaction() throws Exception {
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            foos.add(new Foo());
+        }
+        SQLite.saveAll(foos);
+        final SQLiteClient client = SQLite.obtainClient();
+        client.beginTransaction();
+        try {
+            final SQLiteOps<Foo> ops = SQLiteSchema.opsOf(Foo.class);
+            for (final Foo foo : foos) {
+                foo.setText("Foo #" + foo.getId());
+                ops.update(client, foo);
+            }
+            client.endTransaction();
+        } finally {
+            client.rollbackTransaction();
+        }
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).count().intValue());
+        for (final Foo foo : SQLite.where(Foo.class).list()) {
+            Assert.assertEquals("Foo #" + foo.getId(), foo.getText());
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final List<Foo> foos = new ArrayList<>(BENCHMARK_ROWS);
+        for (int i = 0; i < BENCHMARK_ROWS; ++i) {
+            foos.add(new Foo());
+        }
+        SQLite.saveAll(foos);
+        final SQLiteClient client = SQLite.obtainClient();
+        client.beginTransaction();
+        try {
+            long start = System.nanoTime();
+            for (final Foo foo : foos) {
+                MethodLookup.global()
+                        .find(SQLiteSchema.helperOf(Foo.class), "update", SQLiteClient.class, Foo.class)
+                        .invokeStatic(client, foo);
+            }
+            final long lookup = System.nanoTime() - start;
+            start = System.nanoTime();
+            final SQLiteOps<Foo> ops = SQLiteSchema.opsOf(Foo.class);
+            for (final Foo foo : foos) {
+                ops.update(client, foo);
+            }
+            final long cached = System.nanoTime() - start;
+            System.out.println(String.format("update(%d): lookup per call %dms, ops table %dms", BENCHMARK_ROWS,
+                    TimeUnit.NANOSECONDS.toMillis(lookup), TimeUnit.NANOSECONDS.toMillis(cached)));
+            client.endTransaction();
+        } finally {
+            client.rollbackTransaction();
+        }
+        Assert.assertEquals(BENCHMARK_ROWS, SQLite.where(Foo.class).count().intValue());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    private static class Counter {
+    }
+
+}
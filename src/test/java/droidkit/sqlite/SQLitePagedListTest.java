@@ -0,0 +1,92 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLitePagedListTest {
+
+    private static final int ROWS = 250;
+
+    private SQLiteProvider mProvider;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        mExecutor = Executors.newSingleThreadExecutor();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testIterate() throws Exception {
+        final List<Foo> foos = SQLite.where(Foo.class).pagedList(20, 2, mExecutor);
+        Assert.assertEquals(ROWS, foos.size());
+        for (int i = 0; i < ROWS; ++i) {
+            Assert.assertEquals("Foo #" + (i + 1), foos.get(i).getText());
+            Assert.assertTrue(((SQLitePagedList<Foo>) foos).loadedPages() <= 2);
+        }
+    }
+
+    @Test
+    public void testWhere() throws Exception {
+        final List<Foo> foos = SQLite.where(Foo.class)
+                .greaterThan("_id", 200)
+                .orderBy("_id", false)
+                .pagedList(7);
+        Assert.assertEquals(50, foos.size());
+        Assert.assertEquals("Foo #250", foos.get(0).getText());
+        Assert.assertEquals("Foo #201", foos.get(49).getText());
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        SQLite.where(Foo.class).pagedList(20).get(ROWS);
+    }
+
+    @Test
+    public void testRowsDeleted() throws Exception {
+        final List<Foo> foos = SQLite.where(Foo.class).pagedList(20, 2, mExecutor);
+        SQLite.where(Foo.class).greaterThan("_id", ROWS - 5).clear();
+        Assert.assertEquals(ROWS, foos.size());
+        Assert.assertEquals("Foo #" + (ROWS - 5), foos.get(ROWS - 6).getText());
+        Assert.assertNull(foos.get(ROWS - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLimit() throws Exception {
+        SQLite.where(Foo.class).limit(10).pagedList(5);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        mProvider.shutdown();
+    }
+
+}
@@ -0,0 +1,135 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLitePagerTest {
+
+    private static final int ROWS = 1000;
+
+    private static final int PAGE_SIZE = 30;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i % 7));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testSeekPredicate() throws Exception {
+        Assert.assertEquals("a >= ? AND ((a > ?) OR (a = ? AND b < ?))",
+                SQLitePager.seekPredicate(new String[]{"a", "b"}, new boolean[]{false, true}));
+        Assert.assertEquals(5, SQLitePager.seekArgs(new Object[]{1, 2}).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpressionKey() throws Exception {
+        SQLite.where(Foo.class).orderBy("lower(text)").pager(PAGE_SIZE);
+    }
+
+    @Test
+    public void testCompositeKey() throws Exception {
+        final List<Foo> expected = SQLite.where(Foo.class)
+                .orderBy("text", false)
+                .orderBy("_id")
+                .list();
+        final SQLitePager<Foo> pager = SQLite.where(Foo.class)
+                .orderBy("text", false)
+                .pager(PAGE_SIZE);
+        final List<Foo> actual = new ArrayList<>(ROWS);
+        while (pager.hasNext()) {
+            actual.addAll(pager.next());
+        }
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testSeekAfter() throws Exception {
+        final List<Foo> foos = SQLite.where(Foo.class)
+                .equalTo("text", "Foo #3")
+                .orderBy("text")
+                .orderBy("_id")
+                .seekAfter("Foo #3", 500)
+                .list();
+        Assert.assertFalse(foos.isEmpty());
+        for (final Foo foo : foos) {
+            Assert.assertEquals("Foo #3", foo.getText());
+            Assert.assertTrue(foo.getId() > 500);
+        }
+    }
+
+    @Test
+    public void testSameAsOffset() throws Exception {
+        final SQLitePager<Foo> pager = SQLite.where(Foo.class).pager(PAGE_SIZE);
+        for (int page = 0; page < ROWS / PAGE_SIZE; ++page) {
+            final List<Foo> expected = SQLite.where(Foo.class)
+                    .orderBy("_id")
+                    .offsetLimit(page * PAGE_SIZE, PAGE_SIZE)
+                    .list();
+            final List<Foo> actual = pager.next();
+            Assert.assertEquals(PAGE_SIZE, actual.size());
+            for (int i = 0; i < PAGE_SIZE; ++i) {
+                Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final int lastPage = ROWS / PAGE_SIZE;
+        long start = System.nanoTime();
+        for (int page = 0; page < lastPage; ++page) {
+            Assert.assertEquals(PAGE_SIZE, SQLite.where(Foo.class)
+                    .orderBy("_id")
+                    .offsetLimit(page * PAGE_SIZE, PAGE_SIZE)
+                    .list().size());
+        }
+        final long offset = System.nanoTime() - start;
+        final SQLitePager<Foo> pager = SQLite.where(Foo.class).pager(PAGE_SIZE);
+        start = System.nanoTime();
+        for (int page = 0; page < lastPage; ++page) {
+            Assert.assertEquals(PAGE_SIZE, pager.next().size());
+        }
+        final long keyset = System.nanoTime() - start;
+        System.out.println(String.format("%d pages: offset %dms, keyset %dms", lastPage,
+                TimeUnit.NANOSECONDS.toMillis(offset), TimeUnit.NANOSECONDS.toMillis(keyset)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
@@ -0,0 +1,103 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.io.IOUtils;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteProjectionTest {
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final Foo foo = new Foo();
+        foo.setText("first");
+        SQLite.save(foo);
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        final Cursor cursor = SQLite.where(Foo.class).select("text").cursor();
+        try {
+            Assert.assertArrayEquals(new String[]{"text"}, cursor.getColumnNames());
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+    }
+
+    @Test
+    public void testListAs() throws Exception {
+        final List<FooTitle> titles = SQLite.where(Foo.class)
+                .select("_id", "text")
+                .listAs(FooTitle.class);
+        Assert.assertEquals(1, titles.size());
+        final FooTitle title = titles.get(0);
+        Assert.assertEquals(1, title.getId());
+        Assert.assertEquals("first", title.getText());
+        Assert.assertEquals(title, title);
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void testMissingColumn() throws Exception {
+        SQLite.where(Foo.class).select("_id").listAs(FooTitle.class);
+    }
+
+    @Test
+    public void testSnapshotSelectsId() throws Exception {
+        final Cursor cursor = SQLite.where(Foo.class).select("text").snapshotCursor();
+        try {
+            Assert.assertArrayEquals(new String[]{"text", "_id"}, cursor.getColumnNames());
+        } finally {
+            IOUtils.closeQuietly(cursor);
+        }
+        Assert.assertArrayEquals(new String[]{"_id", "text"},
+                SQLite.where(Foo.class).select("_id", "text").snapshotColumns());
+        Assert.assertNull(SQLite.where(Foo.class).snapshotColumns());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotDistinctWithoutId() throws Exception {
+        SQLite.where(Foo.class).distinct().select("text").snapshotColumns();
+    }
+
+    @Test
+    public void testPropertyNames() throws Exception {
+        Assert.assertEquals("fooBar", ProjectionRowMapper.propertyOf("getFooBar"));
+        Assert.assertEquals("enabled", ProjectionRowMapper.propertyOf("isEnabled"));
+        Assert.assertEquals("title", ProjectionRowMapper.propertyOf("title"));
+        Assert.assertEquals("foo_bar", ProjectionRowMapper.snakeCaseOf("fooBar"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    public interface FooTitle {
+
+        long getId();
+
+        String getText();
+
+    }
+
+}
@@ -1,7 +1,10 @@
 package droidkit.sqlite;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.support.annotation.NonNull;
@@ -10,9 +13,16 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.Benchmark;
 import droidkit.BuildConfig;
 import droidkit.DroidkitTestRunner;
 import droidkit.sqlite.util.SQLiteTestEnv;
@@ -33,6 +43,8 @@ public class SQLiteProviderTest {
             .path(TABLE)
             .build();
 
+    private static final int BENCHMARK_ROWS = 2000;
+
     private SQLiteProvider mProvider;
 
     @Before
@@ -109,9 +121,124 @@ public class SQLiteProviderTest {
         cursor.close();
     }
 
+    @Test
+    public void testUpdateBindsEqualValues() throws Exception {
+        final ContentValues values = new ContentValues();
+        values.put("value", "same");
+        mProvider.insert(URI, values);
+        Assert.assertEquals(1, mProvider.update(URI, values, "value = ?", new String[]{"same"}));
+    }
+
+    @Test
+    public void testQueryParameters() throws Exception {
+        final ContentValues[] rows = createRows(10);
+        rows[9].put("value", "Row #9");
+        mProvider.bulkInsert(URI, rows);
+        Cursor cursor = mProvider.query(URI.buildUpon()
+                .appendQueryParameter(SQLiteProvider.QUERY_LIMIT, "3")
+                .appendQueryParameter(SQLiteProvider.QUERY_OFFSET, "2")
+                .build(), null, null, null, "_id");
+        Assert.assertEquals(3, cursor.getCount());
+        Assert.assertTrue(cursor.moveToFirst());
+        Assert.assertEquals(3, Cursors.getLong(cursor, "_id"));
+        cursor.close();
+        cursor = mProvider.query(URI.buildUpon()
+                .appendQueryParameter(SQLiteProvider.QUERY_DISTINCT, "true")
+                .build(), new String[]{"value"}, null, null, null);
+        Assert.assertEquals(9, cursor.getCount());
+        cursor.close();
+        cursor = mProvider.query(URI.buildUpon()
+                .appendQueryParameter(SQLiteProvider.QUERY_GROUP_BY, "value")
+                .build(), new String[]{"value", "COUNT(*)"}, "value = ?", new String[]{"Row #9"}, null);
+        Assert.assertTrue(cursor.moveToFirst());
+        Assert.assertEquals(2, cursor.getInt(1));
+        cursor.close();
+        cursor = mProvider.query(ContentUris.withAppendedId(URI, 1), new String[]{"value"}, null, null, null);
+        Assert.assertArrayEquals(new String[]{"value"}, cursor.getColumnNames());
+        cursor.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() throws Exception {
+        mProvider.query(URI.buildUpon().appendQueryParameter(SQLiteProvider.QUERY_LIMIT, "1; DROP TABLE p_test")
+                .build(), null, null, null, null);
+    }
+
+    @Test
+    public void testBulkInsert() throws Exception {
+        final AtomicInteger changes = registerObserver();
+        final ContentValues[] rows = createRows(100);
+        rows[50] = new ContentValues();
+        Assert.assertEquals(100, mProvider.bulkInsert(URI, rows));
+        Assert.assertEquals(1, changes.get());
+        Assert.assertEquals("100", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+        Assert.assertEquals("1", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE +
+                " WHERE value IS NULL"));
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        mProvider.bulkInsert(URI, createRows(3));
+        final AtomicInteger changes = registerObserver();
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(URI).withValue("value", "inserted").build());
+        operations.add(ContentProviderOperation.newUpdate(ContentUris.withAppendedId(URI, 1))
+                .withValue("value", "updated").build());
+        operations.add(ContentProviderOperation.newDelete(ContentUris.withAppendedId(URI, 2)).build());
+        final ContentProviderResult[] results = mProvider.applyBatch(operations);
+        Assert.assertEquals(ContentUris.withAppendedId(URI, 4), results[0].uri);
+        Assert.assertEquals(1, results[1].count.intValue());
+        Assert.assertEquals(1, results[2].count.intValue());
+        Assert.assertEquals(1, changes.get());
+        Assert.assertEquals("updated", SQLite.obtainClient().queryForString("SELECT value FROM " + TABLE +
+                " WHERE _id = 1"));
+        Assert.assertEquals("3", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBulkInsertBenchmark() throws Exception {
+        final ContentValues[] rows = createRows(BENCHMARK_ROWS);
+        long start = System.nanoTime();
+        for (final ContentValues row : rows) {
+            mProvider.insert(URI, row);
+        }
+        final long perRow = System.nanoTime() - start;
+        start = System.nanoTime();
+        mProvider.bulkInsert(URI, rows);
+        final long bulk = System.nanoTime() - start;
+        Assert.assertEquals(String.valueOf(2 * BENCHMARK_ROWS),
+                SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+        System.out.println(String.format("provider insert(%d): per-row %dms, bulkInsert %dms", BENCHMARK_ROWS,
+                TimeUnit.NANOSECONDS.toMillis(perRow), TimeUnit.NANOSECONDS.toMillis(bulk)));
+    }
+
     @After
     public void tearDown() throws Exception {
         mProvider.shutdown();
     }
 
-}
\ No newline at end of file
+    @NonNull
+    private ContentValues[] createRows(int count) {
+        final ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; ++i) {
+            rows[i] = new ContentValues();
+            rows[i].put("value", "Row #" + (i + 1));
+        }
+        return rows;
+    }
+
+    @NonNull
+    private AtomicInteger registerObserver() {
+        final AtomicInteger changes = new AtomicInteger();
+        RuntimeEnvironment.application.getContentResolver().registerContentObserver(URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        changes.incrementAndGet();
+                    }
+                });
+        return changes;
+    }
+
+}
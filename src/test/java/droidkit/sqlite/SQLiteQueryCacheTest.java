@@ -0,0 +1,145 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+import rx.functions.Func1;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteQueryCacheTest {
+
+    private static final int ROWS = 100;
+
+    private static final int RUNS = 10;
+
+    private static final int BENCHMARK_RUNS = 200;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testHitAndInvalidate() throws Exception {
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(1000);
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(ROWS, cache.size());
+        SQLite.save(new Foo());
+        Assert.assertEquals(ROWS + 1, SQLite.where(Foo.class).cached().list().size());
+        Assert.assertEquals(2, cache.getMissCount());
+        SQLite.where(Foo.class).lessThan("_id", 11).set("text", "updated").update();
+        Assert.assertEquals(10, SQLite.where(Foo.class).equalTo("text", "updated").cached().list().size());
+    }
+
+    @Test
+    public void testBindArgsInKey() throws Exception {
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(1000);
+        Assert.assertEquals(1, SQLite.where(Foo.class).equalTo("_id", 1).cached().list().size());
+        Assert.assertEquals(0, SQLite.where(Foo.class).equalTo("_id", -1).cached().list().size());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(ROWS);
+        SQLite.where(Foo.class).lessThan("_id", 61).cached().list();
+        SQLite.where(Foo.class).greaterThan("_id", 40).cached().list();
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(60, cache.size());
+    }
+
+    @Test
+    public void testInvalidateOnClearDatabase() throws Exception {
+        SQLite.enableQueryCache(1000);
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        SQLite.clearDatabase();
+        Assert.assertEquals(0, SQLite.where(Foo.class).cached().list().size());
+    }
+
+    @Test
+    public void testInvalidateOnExecute() throws Exception {
+        SQLite.enableQueryCache(1000);
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        SQLite.execute(new Func1<SQLiteClient, Integer>() {
+            @Override
+            public Integer call(SQLiteClient client) {
+                return client.executeUpdateDelete("DELETE FROM foo WHERE _id > ?;", 10);
+            }
+        });
+        Assert.assertEquals(10, SQLite.where(Foo.class).cached().list().size());
+    }
+
+    @Test
+    public void testUncachedByDefault() throws Exception {
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(1000);
+        SQLite.where(Foo.class).list();
+        Assert.assertEquals(0, cache.getMissCount());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRepeatedHits() throws Exception {
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(ROWS);
+        for (int i = 0; i < RUNS; ++i) {
+            Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        }
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(RUNS - 1, cache.getHitCount());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_RUNS; ++i) {
+            Assert.assertEquals(ROWS, SQLite.where(Foo.class).list().size());
+        }
+        final long uncached = System.nanoTime() - start;
+        final SQLiteQueryCache cache = SQLite.enableQueryCache(ROWS);
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_RUNS; ++i) {
+            Assert.assertEquals(ROWS, SQLite.where(Foo.class).cached().list().size());
+        }
+        final long cached = System.nanoTime() - start;
+        Assert.assertEquals(BENCHMARK_RUNS - 1, cache.getHitCount());
+        System.out.println(String.format("list(%d) x %d: uncached %dms, cached %dms, %s", ROWS, BENCHMARK_RUNS,
+                TimeUnit.NANOSECONDS.toMillis(uncached), TimeUnit.NANOSECONDS.toMillis(cached), cache));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLite.disableQueryCache();
+        mProvider.shutdown();
+    }
+
+}
@@ -0,0 +1,81 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.annotation.Config;
+
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.Standard;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteStmtCacheTest {
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+    }
+
+    @Test
+    public void testSurvivesTransactions() throws Exception {
+        final SQLiteClient client = SQLite.obtainClient();
+        final String sql = "DELETE FROM " + Standard.TABLE + " WHERE _id = ?;";
+        final int misses = client.getStatementCache().missCount();
+        final int hits = client.getStatementCache().hitCount();
+        client.executeUpdateDelete(sql, 1);
+        client.beginTransaction();
+        client.executeUpdateDelete(sql, 2);
+        client.endTransaction();
+        client.executeUpdateDelete(sql, 3);
+        Assert.assertEquals(misses + 1, client.getStatementCache().missCount());
+        Assert.assertEquals(hits + 2, client.getStatementCache().hitCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final SQLiteDb db = Mockito.mock(SQLiteDb.class);
+        final SQLiteStmt first = Mockito.mock(SQLiteStmt.class);
+        final SQLiteStmt second = Mockito.mock(SQLiteStmt.class);
+        Mockito.when(db.compileStatement("first")).thenReturn(first);
+        Mockito.when(db.compileStatement("second")).thenReturn(second);
+        final SQLiteStmtCache cache = new SQLiteStmtCache(1);
+        cache.release("first", cache.acquire(db, "first"));
+        cache.release("second", cache.acquire(db, "second"));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.evictionCount());
+        Mockito.verify(first).close();
+        Mockito.verify(second, Mockito.never()).close();
+    }
+
+    @Test
+    public void testCheckedOutStatementIsNotShared() throws Exception {
+        final SQLiteDb db = Mockito.mock(SQLiteDb.class);
+        Mockito.when(db.compileStatement("sql")).thenReturn(Mockito.mock(SQLiteStmt.class),
+                Mockito.mock(SQLiteStmt.class));
+        final SQLiteStmtCache cache = new SQLiteStmtCache(4);
+        final SQLiteStmt first = cache.acquire(db, "sql");
+        final SQLiteStmt second = cache.acquire(db, "sql");
+        Assert.assertNotSame(first, second);
+        cache.release("sql", first);
+        cache.release("sql", second);
+        Assert.assertEquals(1, cache.size());
+        Mockito.verify(first).close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
@@ -0,0 +1,120 @@
+package droidkit.sqlite;
+
+import android.database.ContentObserver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteUpdateTest {
+
+    private static final int ROWS = 100;
+
+    private static final int BENCHMARK_ROWS = 2000;
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        final List<Foo> foos = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            foos.add(foo);
+        }
+        SQLite.saveAll(foos);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        final AtomicInteger changes = new AtomicInteger();
+        final ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        RuntimeEnvironment.application.getContentResolver()
+                .registerContentObserver(SQLiteSchema.resolveUri(Foo.class), true, observer);
+        try {
+            Assert.assertEquals(ROWS / 2, SQLite.where(Foo.class)
+                    .greaterThan("_id", ROWS / 2)
+                    .set("text", "updated")
+                    .update());
+            Assert.assertEquals(1, changes.get());
+            Assert.assertEquals(ROWS / 2, SQLite.where(Foo.class).equalTo("text", "updated").count().intValue());
+            Assert.assertEquals(0, SQLite.where(Foo.class).equalTo("_id", -1).set("text", null).update());
+            Assert.assertEquals(1, changes.get());
+        } finally {
+            RuntimeEnvironment.application.getContentResolver().unregisterContentObserver(observer);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNothingToUpdate() throws Exception {
+        SQLite.where(Foo.class).update();
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception {
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).set("text", "set based").update());
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).equalTo("text", "set based").count().intValue());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        final List<Foo> foos = new ArrayList<>(BENCHMARK_ROWS);
+        for (int i = 0; i < BENCHMARK_ROWS; ++i) {
+            foos.add(new Foo());
+        }
+        SQLite.saveAll(foos);
+        final int rows = ROWS + BENCHMARK_ROWS;
+        long start = System.nanoTime();
+        SQLite.beginTransaction();
+        try {
+            for (final Foo foo : SQLite.where(Foo.class).list()) {
+                foo.setText("one by one");
+                SQLite.update(foo);
+            }
+            SQLite.endTransaction();
+        } finally {
+            SQLite.rollbackTransaction();
+        }
+        final long oneByOne = System.nanoTime() - start;
+        start = System.nanoTime();
+        Assert.assertEquals(rows, SQLite.where(Foo.class).set("text", "set based").update());
+        final long setBased = System.nanoTime() - start;
+        Assert.assertEquals(rows, SQLite.where(Foo.class).equalTo("text", "set based").count().intValue());
+        System.out.println(String.format("update(%d): one by one %dms, set based %dms", rows,
+                TimeUnit.NANOSECONDS.toMillis(oneByOne), TimeUnit.NANOSECONDS.toMillis(setBased)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}
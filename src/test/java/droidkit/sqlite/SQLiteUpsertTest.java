@@ -0,0 +1,212 @@
+package droidkit.sqlite;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.io.IOUtils;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteUpsertTest {
+
+    private static final String TABLE = "contact";
+
+    private static final int ROWS = 100;
+
+    private static final int BENCHMARK_ROWS = 2000;
+
+    private static final SQLiteRowWriter<Contact> WRITER = new SQLiteRowWriter<Contact>() {
+        @NonNull
+        @Override
+        public String[] getColumns() {
+            return new String[]{"email", "name"};
+        }
+
+        @Override
+        public long getId(@NonNull Contact object) {
+            return object.mId;
+        }
+
+        @Override
+        public void setId(@NonNull Contact object, long id) {
+            object.mId = id;
+        }
+
+        @Override
+        public void bindRow(@NonNull SQLiteBindable stmt, int offset, @NonNull Contact object) {
+            stmt.bindString(offset + 1, object.mEmail);
+            stmt.bindString(offset + 2, object.mName);
+        }
+    };
+
+    private SQLiteProvider mProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLiteSchema.attachTableInfo(Contact.class, TABLE, Contact.class);
+        SQLite.registerRowWriter(Contact.class, WRITER);
+        SQLiteTestEnv.registerProvider((mProvider = new SQLiteProvider() {
+            @Override
+            protected SQLiteClient createClient() {
+                return new AndroidSQLiteClient(getContext(), null, 1) {
+                    @Override
+                    protected void onCreate(@NonNull SQLiteDb db) {
+                        db.compileStatement("CREATE TABLE " + TABLE + "(_id INTEGER PRIMARY KEY," +
+                                " email TEXT UNIQUE, name TEXT);").execute();
+                    }
+                };
+            }
+        }));
+    }
+
+    @Test
+    public void testBuildSql() throws Exception {
+        Assert.assertEquals("UPDATE contact SET email = ?, name = ? WHERE _id = ?;",
+                SQLiteUpsert.buildUpdateSql(TABLE, WRITER.getColumns()));
+        Assert.assertEquals("INSERT INTO contact(email, name, _id) VALUES(?, ?, ?);",
+                SQLiteUpsert.buildInsertSql(TABLE, WRITER.getColumns()));
+    }
+
+    @Test
+    public void testUpsertById() throws Exception {
+        final Contact contact = new Contact("a@droidkit.io", "A");
+        SQLite.upsert(contact, BaseColumns._ID);
+        Assert.assertEquals(1, contact.mId);
+        contact.mName = "B";
+        SQLite.upsert(contact, BaseColumns._ID);
+        Assert.assertEquals(1, contact.mId);
+        Assert.assertEquals("1", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+        Assert.assertEquals("B", SQLite.obtainClient().queryForString("SELECT name FROM " + TABLE));
+        final Contact detached = new Contact("c@droidkit.io", "C");
+        detached.mId = 10;
+        SQLite.upsert(detached, BaseColumns._ID);
+        Assert.assertEquals("C", SQLite.obtainClient().queryForString("SELECT name FROM " + TABLE +
+                " WHERE _id = ?", 10));
+    }
+
+    @Test
+    public void testUpsertByColumn() throws Exception {
+        final Contact contact = new Contact("a@droidkit.io", "A");
+        SQLite.upsert(contact, "email");
+        final Contact remote = new Contact("a@droidkit.io", "Remote");
+        SQLite.upsert(remote, "email");
+        Assert.assertEquals(contact.mId, remote.mId);
+        Assert.assertEquals("1", SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE));
+        Assert.assertEquals("Remote", SQLite.obtainClient().queryForString("SELECT name FROM " + TABLE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownColumn() throws Exception {
+        SQLite.upsert(new Contact("a@droidkit.io", "A"), "phone");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoRowWriter() throws Exception {
+        SQLiteSchema.attachTableInfo(Note.class, TABLE, Note.class);
+        SQLite.upsert(new Note(), "email");
+    }
+
+    @Test
+    public void testUpsertAll() throws Exception {
+        final List<Contact> local = createContacts("local", ROWS);
+        SQLite.upsertAll(local, "email");
+        final List<Contact> remote = createContacts("remote", ROWS);
+        SQLite.upsertAll(remote, "email");
+        Assert.assertEquals(String.valueOf(ROWS),
+                SQLite.obtainClient().queryForString("SELECT COUNT(*) FROM " + TABLE + " WHERE name = 'remote'"));
+        for (int i = 0; i < ROWS; ++i) {
+            Assert.assertEquals(local.get(i).mId, remote.get(i).mId);
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        SQLite.upsertAll(createContacts("local", BENCHMARK_ROWS), "email");
+        final List<Contact> remote = createContacts("remote", BENCHMARK_ROWS);
+        final SQLiteClient client = SQLite.obtainClient();
+        long start = System.nanoTime();
+        client.beginTransaction();
+        try {
+            for (final Contact contact : remote) {
+                final Cursor cursor = client.query("SELECT * FROM " + TABLE + " WHERE email = ?", contact.mEmail);
+                try {
+                    if (cursor.moveToFirst()) {
+                        client.executeUpdateDelete("UPDATE " + TABLE + " SET email = ?, name = ? WHERE _id = ?;",
+                                contact.mEmail, contact.mName, cursor.getLong(0));
+                    } else {
+                        client.executeInsert("INSERT INTO " + TABLE + "(email, name) VALUES(?, ?);",
+                                contact.mEmail, contact.mName);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(cursor);
+                }
+            }
+            client.endTransaction();
+        } finally {
+            client.rollbackTransaction();
+        }
+        final long queryThenWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        SQLite.upsertAll(createContacts("upsert", BENCHMARK_ROWS), "email");
+        final long upsert = System.nanoTime() - start;
+        Assert.assertEquals(String.valueOf(BENCHMARK_ROWS),
+                client.queryForString("SELECT COUNT(*) FROM " + TABLE + " WHERE name = 'upsert'"));
+        System.out.println(String.format("upsertAll(%d): query then write %dms, upsert %dms", BENCHMARK_ROWS,
+                TimeUnit.NANOSECONDS.toMillis(queryThenWrite), TimeUnit.NANOSECONDS.toMillis(upsert)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+    @NonNull
+    private List<Contact> createContacts(@NonNull String name, int count) {
+        final List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            contacts.add(new Contact("contact" + i + "@droidkit.io", name));
+        }
+        return contacts;
+    }
+
+    private static class Note {
+
+    }
+
+    private static class Contact {
+
+        long mId;
+
+        String mEmail;
+
+        String mName;
+
+        Contact(String email, String name) {
+            mEmail = email;
+            mName = name;
+        }
+
+    }
+
+}
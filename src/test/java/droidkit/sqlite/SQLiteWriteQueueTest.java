@@ -0,0 +1,124 @@
+package droidkit.sqlite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import droidkit.Benchmark;
+import droidkit.BuildConfig;
+import droidkit.DroidkitTestRunner;
+import droidkit.sqlite.bean.xyz.Foo;
+import droidkit.sqlite.util.SQLiteTestEnv;
+
+/**
+ * @author Daniel Serdyukov
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(DroidkitTestRunner.class)
+public class SQLiteWriteQueueTest {
+
+    private static final int ROWS = 500;
+
+    private SQLiteProvider mProvider;
+
+    private SQLiteWriteQueue mQueue;
+
+    @Before
+    public void setUp() throws Exception {
+        mProvider = SQLiteTestEnv.registerProvider();
+        mQueue = new SQLiteWriteQueue()
+                .setBatchSize(64)
+                .setBatchDelay(5, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        final List<Future<Foo>> futures = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            final Foo foo = new Foo();
+            foo.setText("Foo #" + (i + 1));
+            futures.add(mQueue.save(foo));
+        }
+        mQueue.flush();
+        Assert.assertEquals(0, mQueue.size());
+        for (final Future<Foo> future : futures) {
+            Assert.assertTrue(future.isDone());
+            Assert.assertTrue(future.get().getId() > 0);
+        }
+        Assert.assertEquals(ROWS, SQLite.where(Foo.class).count().intValue());
+    }
+
+    @Test
+    public void testFailedWriteIsIsolated() throws Exception {
+        final Future<Foo> before = mQueue.save(new Foo());
+        final Future<Object> failed = mQueue.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                SQLite.obtainClient().execute("INSERT INTO no_such_table VALUES(1);");
+                return null;
+            }
+        });
+        final Future<Foo> after = mQueue.save(new Foo());
+        mQueue.flush();
+        Assert.assertNotNull(before.get());
+        Assert.assertNotNull(after.get());
+        try {
+            failed.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+        Assert.assertEquals(2, SQLite.where(Foo.class).count().intValue());
+    }
+
+    @Test
+    public void testDurability() throws Exception {
+        final long synchronous = SQLite.obtainClient().queryForLong("PRAGMA synchronous;");
+        mQueue.setDurability(SQLiteWriteQueue.Durability.OFF);
+        final Future<Long> level = mQueue.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return SQLite.obtainClient().queryForLong("PRAGMA synchronous;");
+            }
+        });
+        mQueue.flush();
+        Assert.assertEquals(0L, level.get().longValue());
+        Assert.assertEquals(synchronous, SQLite.obtainClient().queryForLong("PRAGMA synchronous;"));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void testBenchmark() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; ++i) {
+            SQLite.save(new Foo());
+        }
+        final long sync = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ROWS; ++i) {
+            mQueue.save(new Foo());
+        }
+        mQueue.flush();
+        final long grouped = System.nanoTime() - start;
+        Assert.assertEquals(2 * ROWS, SQLite.where(Foo.class).count().intValue());
+        System.out.println(String.format("save(%d): commit per write %dms, group commit %dms", ROWS,
+                TimeUnit.NANOSECONDS.toMillis(sync), TimeUnit.NANOSECONDS.toMillis(grouped)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProvider.shutdown();
+    }
+
+}